@@ -0,0 +1,32 @@
+#!/usr/bin/env bash
+# Time to first token of the CLI with and without the AppCDS archive produced by
+# `mvn -f PythonLexer/pom.xml -Pappcds package` (run from the repository root).
+# Usage: scripts/startup-benchmark.sh [input file] [runs]
+set -euo pipefail
+cd "$(dirname "$0")/.."
+
+JAR=target/Python-Lexer-1.0-SNAPSHOT.jar
+ARCHIVE=target/Python-Lexer.jsa
+INPUT=${1:-src/main/resources/main1.py}
+RUNS=${2:-20}
+
+if [[ ! -f $JAR || ! -f $ARCHIVE ]]; then
+    echo "Build the jar and the archive first: mvn -f PythonLexer/pom.xml -Pappcds package" >&2
+    exit 1
+fi
+
+# prints the mean number of milliseconds until the first output line arrives
+measure() {
+    local total=0
+    for ((i = 0; i < RUNS; i++)); do
+        local start first
+        start=$(date +%s%N)
+        first=$(java "$@" -jar "$JAR" --format=tsv "$INPUT" | { IFS= read -r _; date +%s%N; cat > /dev/null; })
+        total=$((total + first - start))
+    done
+    echo $((total / RUNS / 1000000))
+}
+
+measure -Xshare:auto > /dev/null
+echo "default CDS: $(measure -Xshare:auto) ms"
+echo "AppCDS:      $(measure -XX:SharedArchiveFile="$ARCHIVE") ms"
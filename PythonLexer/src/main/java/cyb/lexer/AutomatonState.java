@@ -72,16 +72,23 @@ public enum AutomatonState {
     SIGNED_EXPONENT_FLOAT_ON_ZERO_PREFIX_INTEGER,
     SIGNED_EXPONENT_FLOAT_ON_FLOAT,
     EXPONENT_FLOAT,
+    MALFORMED_NUMERIC_LITERAL,
 
     IDENTIFIER_OR_STRING_LITERAL,
     SINGLE_OR_TRIPLE_QUOTED_STRING,
     CLOSED_SINGLE_OR_OPENED_TRIPLE_QUOTED_STRING,
     SINGLE_QUOTED_STRING,
-    DOUBLE_QUOTED_STRING,
     TRIPLE_QUOTED_STRING,
     TRIPLE_QUOTED_STRING_WITH_QUOTE,
     TRIPLE_QUOTED_STRING_WITH_DOUBLE_QUOTE,
     ESCAPE,
+    OCTAL_ESCAPE,
+    HEX_ESCAPE,
+    NAMED_ESCAPE,
+    FORMAT_FIELD_START,
+    FORMAT_FIELD,
+    FORMAT_FIELD_STRING,
+    FORMAT_FIELD_ESCAPE,
 
     FIRST_INDENT,
     INDENT,
@@ -7,177 +7,337 @@ import java.util.*;
 enum StringType {
     NONE,
     SINGLE_QUOTED,
-    DOUBLE_QUOTED,
     TRIPLE_QUOTED
 }
 
 public class Lexer {
     private static final int TAB_STOP_LENGTH = 8;
-    private static final Map<String, TokenType> KEYWORDS = new HashMap<>();
+    private static final int KEYWORDS_TABLE_SIZE = 128;
+    private static final TokenType[] KEYWORDS = new TokenType[KEYWORDS_TABLE_SIZE];
 
     static {
         boolean keywordsStarted = false;
 
         for (TokenType type : TokenType.values()) {
             if (keywordsStarted) {
-                KEYWORDS.put(type.getValue(), type);
+                addKeyword(type);
                 if (type == TokenType.YIELD) {
                     break;
                 }
             } else if (type == TokenType.AND) {
                 keywordsStarted = true;
-                KEYWORDS.put(type.getValue(), type);
+                addKeyword(type);
             }
         }
     }
 
-    private final InputStream in;
+    private static final int INPUT_BUFFER_SIZE = 8192;
+
+    private InputStream in;
+    private final byte[] input = new byte[INPUT_BUFFER_SIZE];
+    private int inputPosition = 0;
+    private int inputLimit = 0;
     private AutomatonState state = AutomatonState.INITIAL;
-    private final List<Token> tokens = new ArrayList<>();
     private final StringBuilder buffer = new StringBuilder();
     private int currentLine = 0;
     private int currentColumn = -1;
     private int tokenStartRow = 0;
     private int tokenStartColumn = 0;
     private char currentChar;
+    private final char[] lookahead = new char[2];
+    private int lookaheadLength = 0;
+    private boolean literalValues = false;
+    private boolean digitSeparator = false;
+    private final EnumSet<TokenType> selectedTypes = EnumSet.allOf(TokenType.class);
+    private boolean wordsSelected = true;
+    private boolean captureString = true;
+    private boolean failFast = false;
+    private boolean finished = false;
+    private int producedTokens = 0;
+    private TokenCursor[] pending = new TokenCursor[16];
+    private int pendingStart = 0;
+    private int pendingSize = 0;
 
     private boolean blankLine = true;
-    private final LinkedList<Integer> indentsStack = new LinkedList<>();
+    private int[] indentsStack = new int[16];
+    private int indentsStackSize = 1;
     private int currentIndent = 0;
+    private char[] openBrackets = new char[16];
+    private int bracketDepth = 0;
+    private int bracketLine;
+    private int bracketColumn;
     private StringType currentStringType = StringType.NONE;
+    private TokenType currentStringLiteral = TokenType.STRING_LITERAL;
+    private char currentQuote;
+    private boolean rawString;
+    private int escapeStart;
+    private int escapeValue;
+    private int escapeLength;
+    private int escapeDigits;
+    private int formatFieldDepth;
+    private boolean formatSpec;
+    private char formatFieldQuote;
 
+    /**
+     * The lexer takes ownership of {@code in} until it is reset or discarded: it reads the stream through
+     * its own 8 KB buffer, so the stream does not need to be buffered, but up to that many bytes past the
+     * last returned token may already have been consumed. Callers must therefore pass a stream that ends
+     * where the source ends (a file, an archive entry) and must not read from it afterwards. The lexer never
+     * closes the stream.
+     */
     public Lexer(InputStream in) {
         this.in = in;
-        indentsStack.add(0);
+        for (int i = 0; i < pending.length; i++) {
+            pending[i] = new TokenCursor();
+        }
+    }
+
+    /**
+     * Prepares the lexer for a new input, keeping its settings and its already allocated buffers. The lexer
+     * takes ownership of the new input just like of the one given to the constructor, and whatever was read
+     * ahead from the previous input is discarded.
+     */
+    public void reset(InputStream in) {
+        this.in = in;
+        inputPosition = 0;
+        inputLimit = 0;
+        state = AutomatonState.INITIAL;
+        buffer.setLength(0);
+        currentLine = 0;
+        currentColumn = -1;
+        tokenStartRow = 0;
+        tokenStartColumn = 0;
+        currentChar = 0;
+        lookaheadLength = 0;
+        digitSeparator = false;
+        finished = false;
+        producedTokens = 0;
+        pendingStart = 0;
+        pendingSize = 0;
+        blankLine = true;
+        indentsStackSize = 1;
+        currentIndent = 0;
+        bracketDepth = 0;
+        currentStringType = StringType.NONE;
+    }
+
+    public void setLiteralValues(boolean literalValues) {
+        this.literalValues = literalValues;
+    }
+
+    /**
+     * Selects the token types {@link #next} delivers; the values of other types are not even built. The
+     * filter may be switched between tokens. Types it drops are not delivered after the call, even from
+     * tokens the lexer has already read ahead. Types it adds only show up in tokens lexed after the call,
+     * as unselected tokens are discarded when they end: one that ended along with the last delivered token,
+     * like the NEWLINE after the last token of a line, is gone, and a string literal that was already open
+     * keeps its filtered-out empty value.
+     */
+    public void setTokenFilter(Set<TokenType> types) {
+        selectedTypes.clear();
+        selectedTypes.addAll(types);
+        wordsSelected = selectedTypes.contains(TokenType.IDENTIFIER);
+        for (TokenType type : KEYWORDS) {
+            wordsSelected |= type != null && selectedTypes.contains(type);
+        }
+
+        int kept = 0;
+        for (int i = 0; i < pendingSize; i++) {
+            int from = (pendingStart + i) % pending.length;
+            if (selectedTypes.contains(pending[from].getType())) {
+                int to = (pendingStart + kept++) % pending.length;
+                TokenCursor token = pending[to];
+                pending[to] = pending[from];
+                pending[from] = token;
+            }
+        }
+        pendingSize = kept;
+    }
+
+    /**
+     * Makes the first ERROR token the last one delivered.
+     */
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
     }
 
     public List<Token> analyze() throws IOException {
-        int result;
+        List<Token> tokens = new ArrayList<>();
+        TokenCursor cursor = new TokenCursor();
 
-        while (true) {
-            result = in.read();
+        while (next(cursor)) {
+            tokens.add(cursor.toToken());
+        }
+        return tokens;
+    }
 
-            if (result < 0) {
-                if (currentChar == '\n') {
-                    return tokens;
-                } else {
-                    if (currentStringType == StringType.TRIPLE_QUOTED) {
-                        endToken(TokenType.ERROR, "Missing closing triple quote.");
-                        state = AutomatonState.INITIAL;
-                    }
-                    currentChar = '\n';
-                }
-            } else {
-                currentChar = (char) result;
+    /**
+     * Moves the cursor to the next token. Once the lexer has warmed up, this does not allocate.
+     *
+     * @return false when the input is exhausted
+     */
+    public boolean next(TokenCursor cursor) throws IOException {
+        while (pendingSize == 0 && !finished) {
+            step();
+        }
+        if (pendingSize == 0) {
+            return false;
+        }
+
+        cursor.copyFrom(pending[pendingStart]);
+        pendingStart = (pendingStart + 1) % pending.length;
+        pendingSize--;
+        return true;
+    }
+
+    private void step() throws IOException {
+        int result = lookaheadLength > 0 ? lookahead[--lookaheadLength] : read();
+
+        if (result < 0) {
+            if (currentStringType == StringType.TRIPLE_QUOTED) {
+                addToken(TokenType.ERROR, "Missing closing triple quote.", tokenStartRow, tokenStartColumn);
+                buffer.setLength(0);
+                currentStringType = StringType.NONE;
+                state = AutomatonState.INITIAL;
+            } else if (currentChar == '\n' && bracketDepth > 0) {
+                // Reported once the last line is flushed, so the error follows that line's tokens.
+                addToken(TokenType.ERROR, "Unclosed bracket.", bracketLine, bracketColumn);
+                bracketDepth = 0;
+            } else if (currentChar == '\n') {
+                finished = true;
+                return;
             }
-            currentColumn++;
-
-            switch (state) {
-                case INITIAL -> setStateByCurrentChar();
-                case KEYWORD_OR_IDENTIFIER -> parseKeywordOrIdentifier();
-                case PLUS -> parseOperatorWithAlternative(TokenType.PLUS,
-                        '=', AutomatonState.PLUS_ASSIGN);
-                case PLUS_ASSIGN -> endToken(TokenType.PLUS_ASSIGN, TokenType.PLUS_ASSIGN.getValue());
-                case MINUS -> parseOperatorWithDoubleAlternative(TokenType.MINUS,
-                        '=', AutomatonState.MINUS_ASSIGN,
-                        '>', AutomatonState.ARROW);
-                case MINUS_ASSIGN -> endToken(TokenType.MINUS_ASSIGN, TokenType.MINUS_ASSIGN.getValue());
-                case ARROW -> endToken(TokenType.ARROW, TokenType.ARROW.getValue());
-                case ASTERISK -> parseOperatorWithDoubleAlternative(TokenType.ASTERISK,
-                        '=', AutomatonState.ASTERISK_ASSIGN,
-                        '*', AutomatonState.POWER);
-                case ASTERISK_ASSIGN -> endToken(TokenType.ASTERISK_ASSIGN, TokenType.ASTERISK_ASSIGN.getValue());
-                case POWER -> parseOperatorWithAlternative(TokenType.POWER,
-                        '=', AutomatonState.POWER_ASSIGN);
-                case POWER_ASSIGN -> endToken(TokenType.POWER_ASSIGN, TokenType.POWER_ASSIGN.getValue());
-                case PERCENT -> parseOperatorWithAlternative(TokenType.PERCENT,
-                        '=', AutomatonState.PERCENT_ASSIGN);
-                case PERCENT_ASSIGN -> endToken(TokenType.PERCENT_ASSIGN, TokenType.PERCENT_ASSIGN.getValue());
-                case SLASH -> parseOperatorWithDoubleAlternative(TokenType.SLASH,
-                        '=', AutomatonState.SLASH_ASSIGN,
-                        '/', AutomatonState.DOUBLE_SLASH);
-                case SLASH_ASSIGN -> endToken(TokenType.SLASH_ASSIGN, TokenType.SLASH_ASSIGN.getValue());
-                case DOUBLE_SLASH -> parseOperatorWithAlternative(TokenType.DOUBLE_SLASH,
-                        '=', AutomatonState.DOUBLE_SLASH_ASSIGN);
-                case DOUBLE_SLASH_ASSIGN -> endToken(TokenType.DOUBLE_SLASH_ASSIGN, TokenType.DOUBLE_SLASH_ASSIGN.getValue());
-                case AT -> parseOperatorWithAlternative(TokenType.AT,
-                        '=', AutomatonState.AT_ASSIGN);
-                case AT_ASSIGN -> endToken(TokenType.AT_ASSIGN, TokenType.AT_ASSIGN.getValue());
-                case LESS -> parseOperatorWithDoubleAlternative(TokenType.LESS,
-                        '=', AutomatonState.LESS_EQUAL,
-                        '<', AutomatonState.LEFT_SHIFT);
-                case LESS_EQUAL -> endToken(TokenType.LESS_EQUAL, TokenType.LESS_EQUAL.getValue());
-                case LEFT_SHIFT -> parseOperatorWithAlternative(TokenType.LEFT_SHIFT,
-                        '=', AutomatonState.LEFT_SHIFT_ASSIGN);
-                case LEFT_SHIFT_ASSIGN -> endToken(TokenType.LEFT_SHIFT_ASSIGN, TokenType.LEFT_SHIFT_ASSIGN.getValue());
-                case GREATER -> parseOperatorWithDoubleAlternative(TokenType.GREATER,
-                        '=', AutomatonState.GREATER_EQUAL,
-                        '>', AutomatonState.RIGHT_SHIFT);
-                case GREATER_EQUAL -> endToken(TokenType.GREATER_EQUAL, TokenType.GREATER_EQUAL.getValue());
-                case RIGHT_SHIFT -> parseOperatorWithAlternative(TokenType.RIGHT_SHIFT,
-                        '=', AutomatonState.RIGHT_SHIFT_ASSIGN);
-                case RIGHT_SHIFT_ASSIGN -> endToken(TokenType.RIGHT_SHIFT_ASSIGN, TokenType.RIGHT_SHIFT_ASSIGN.getValue());
-                case BITWISE_AND -> parseOperatorWithAlternative(TokenType.BITWISE_AND,
-                        '=', AutomatonState.BITWISE_AND_ASSIGN);
-                case BITWISE_AND_ASSIGN -> endToken(TokenType.BITWISE_AND_ASSIGN, TokenType.BITWISE_AND_ASSIGN.getValue());
-                case BITWISE_OR -> parseOperatorWithAlternative(TokenType.BITWISE_OR,
-                        '=', AutomatonState.BITWISE_OR_ASSIGN);
-                case BITWISE_OR_ASSIGN -> endToken(TokenType.BITWISE_OR_ASSIGN, TokenType.BITWISE_OR_ASSIGN.getValue());
-                case BITWISE_XOR -> parseOperatorWithAlternative(TokenType.BITWISE_XOR,
-                        '=', AutomatonState.BITWISE_XOR_ASSIGN);
-                case BITWISE_XOR_ASSIGN -> endToken(TokenType.BITWISE_XOR_ASSIGN, TokenType.BITWISE_XOR_ASSIGN.getValue());
-                case BITWISE_NOT -> endToken(TokenType.BITWISE_NOT, TokenType.BITWISE_NOT.getValue());
-                case ASSIGN -> parseOperatorWithAlternative(TokenType.ASSIGN,
-                        '=', AutomatonState.EQUAL);
-                case EQUAL -> endToken(TokenType.EQUAL, TokenType.EQUAL.getValue());
-                case LEFT_PARENTHESIS -> endToken(TokenType.LEFT_PARENTHESIS, TokenType.LEFT_PARENTHESIS.getValue());
-                case RIGHT_PARENTHESIS -> endToken(TokenType.RIGHT_PARENTHESIS, TokenType.RIGHT_PARENTHESIS.getValue());
-                case LEFT_SQUARE_BRACKET -> endToken(TokenType.LEFT_SQUARE_BRACKET, TokenType.LEFT_SQUARE_BRACKET.getValue());
-                case RIGHT_SQUARE_BRACKET -> endToken(TokenType.RIGHT_SQUARE_BRACKET, TokenType.RIGHT_SQUARE_BRACKET.getValue());
-                case LEFT_CURLY_BRACKET -> endToken(TokenType.LEFT_CURLY_BRACKET, TokenType.LEFT_CURLY_BRACKET.getValue());
-                case RIGHT_CURLY_BRACKET -> endToken(TokenType.RIGHT_CURLY_BRACKET, TokenType.RIGHT_CURLY_BRACKET.getValue());
-                case COMMA -> endToken(TokenType.COMMA, TokenType.COMMA.getValue());
-                case COLON -> parseOperatorWithAlternative(TokenType.COLON,
-                        '=', AutomatonState.COLON_ASSIGN);
-                case DOT -> parseDot();
-                case COLON_ASSIGN -> endToken(TokenType.COLON_ASSIGN, TokenType.COLON_ASSIGN.getValue());
-                case SEMICOLON -> endToken(TokenType.SEMICOLON, TokenType.SEMICOLON.getValue());
-                case EXCLAMATION_MARK -> parseExclamationMark();
-                case NOT_EQUAL -> endToken(TokenType.NOT_EQUAL, TokenType.NOT_EQUAL.getValue());
-                case ZERO_INTEGER_OR_RADIX -> parseZeroIntegerOrRadix();
-                case BINARY_INTEGER_START -> parseBinaryIntegerStart();
-                case OCTAL_INTEGER_START -> parseOctalIntegerStart();
-                case HEX_INTEGER_START -> parseHexIntegerStart();
-                case BINARY_INTEGER -> parseBinaryInteger();
-                case OCTAL_INTEGER -> parseOctalInteger();
-                case HEX_INTEGER -> parseHexInteger();
-                case DECIMAL_INTEGER -> parseDecimalInteger();
-                case FLOAT -> parseFloat();
-                case IMAGINARY -> endToken(TokenType.IMAGINARY_LITERAL, buffer.toString());
-                case ZERO_INTEGER -> parseZeroInteger();
-                case INTEGER_WITH_ZERO_PREFIX -> parseIntegerWithZeroPrefix();
-                case EXPONENT_FLOAT_ON_INTEGER -> parseExponentFloatOnInteger();
-                case EXPONENT_FLOAT_ON_ZERO_PREFIX_INTEGER -> parseExponentFloatOnZeroPrefixInteger();
-                case EXPONENT_FLOAT_ON_FLOAT -> parseExponentFloatOnFloat();
-                case SIGNED_EXPONENT_FLOAT_ON_INTEGER -> parseSignedExponentFloatOnInteger();
-                case SIGNED_EXPONENT_FLOAT_ON_ZERO_PREFIX_INTEGER -> parseSignedExponentFloatOnZeroPrefixInteger();
-                case SIGNED_EXPONENT_FLOAT_ON_FLOAT -> parseSignedExponentFloatOnFloat();
-                case EXPONENT_FLOAT -> parseExponentFloat();
-                case IDENTIFIER_OR_STRING_LITERAL -> parseIdentifierOrStringLiteral();
-                case SINGLE_OR_TRIPLE_QUOTED_STRING -> parseSingleOrTripleQuotedString();
-                case CLOSED_SINGLE_OR_OPENED_TRIPLE_QUOTED_STRING -> parseClosedSingleOrOpenedTripleQuotedString();
-                case SINGLE_QUOTED_STRING -> parseSingleQuotedString();
-                case DOUBLE_QUOTED_STRING -> parseDoubleQuotedString();
-                case TRIPLE_QUOTED_STRING -> parseTripleQuotedString();
-                case ESCAPE -> parseEscaped();
-                case TRIPLE_QUOTED_STRING_WITH_QUOTE -> parseTripleQuotedStringWithQuote();
-                case TRIPLE_QUOTED_STRING_WITH_DOUBLE_QUOTE -> parseTripleQuotedStringWithDoubleQuote();
-                case FIRST_INDENT -> parseFirstIndent();
-                case INDENT -> parseIndent();
-                case BACKSLASH -> parseBackslash();
-                case COMMENT -> skipComment();
+            currentChar = '\n';
+        } else {
+            currentChar = (char) result;
+        }
+        currentColumn++;
+
+        switch (state) {
+            case INITIAL -> setStateByCurrentChar();
+            case KEYWORD_OR_IDENTIFIER -> parseKeywordOrIdentifier();
+            case PLUS -> parseOperatorWithAlternative(TokenType.PLUS,
+                    '=', AutomatonState.PLUS_ASSIGN);
+            case PLUS_ASSIGN -> endToken(TokenType.PLUS_ASSIGN, TokenType.PLUS_ASSIGN.getValue());
+            case MINUS -> parseOperatorWithDoubleAlternative(TokenType.MINUS,
+                    '=', AutomatonState.MINUS_ASSIGN,
+                    '>', AutomatonState.ARROW);
+            case MINUS_ASSIGN -> endToken(TokenType.MINUS_ASSIGN, TokenType.MINUS_ASSIGN.getValue());
+            case ARROW -> endToken(TokenType.ARROW, TokenType.ARROW.getValue());
+            case ASTERISK -> parseOperatorWithDoubleAlternative(TokenType.ASTERISK,
+                    '=', AutomatonState.ASTERISK_ASSIGN,
+                    '*', AutomatonState.POWER);
+            case ASTERISK_ASSIGN -> endToken(TokenType.ASTERISK_ASSIGN, TokenType.ASTERISK_ASSIGN.getValue());
+            case POWER -> parseOperatorWithAlternative(TokenType.POWER,
+                    '=', AutomatonState.POWER_ASSIGN);
+            case POWER_ASSIGN -> endToken(TokenType.POWER_ASSIGN, TokenType.POWER_ASSIGN.getValue());
+            case PERCENT -> parseOperatorWithAlternative(TokenType.PERCENT,
+                    '=', AutomatonState.PERCENT_ASSIGN);
+            case PERCENT_ASSIGN -> endToken(TokenType.PERCENT_ASSIGN, TokenType.PERCENT_ASSIGN.getValue());
+            case SLASH -> parseOperatorWithDoubleAlternative(TokenType.SLASH,
+                    '=', AutomatonState.SLASH_ASSIGN,
+                    '/', AutomatonState.DOUBLE_SLASH);
+            case SLASH_ASSIGN -> endToken(TokenType.SLASH_ASSIGN, TokenType.SLASH_ASSIGN.getValue());
+            case DOUBLE_SLASH -> parseOperatorWithAlternative(TokenType.DOUBLE_SLASH,
+                    '=', AutomatonState.DOUBLE_SLASH_ASSIGN);
+            case DOUBLE_SLASH_ASSIGN -> endToken(TokenType.DOUBLE_SLASH_ASSIGN, TokenType.DOUBLE_SLASH_ASSIGN.getValue());
+            case AT -> parseOperatorWithAlternative(TokenType.AT,
+                    '=', AutomatonState.AT_ASSIGN);
+            case AT_ASSIGN -> endToken(TokenType.AT_ASSIGN, TokenType.AT_ASSIGN.getValue());
+            case LESS -> parseOperatorWithDoubleAlternative(TokenType.LESS,
+                    '=', AutomatonState.LESS_EQUAL,
+                    '<', AutomatonState.LEFT_SHIFT);
+            case LESS_EQUAL -> endToken(TokenType.LESS_EQUAL, TokenType.LESS_EQUAL.getValue());
+            case LEFT_SHIFT -> parseOperatorWithAlternative(TokenType.LEFT_SHIFT,
+                    '=', AutomatonState.LEFT_SHIFT_ASSIGN);
+            case LEFT_SHIFT_ASSIGN -> endToken(TokenType.LEFT_SHIFT_ASSIGN, TokenType.LEFT_SHIFT_ASSIGN.getValue());
+            case GREATER -> parseOperatorWithDoubleAlternative(TokenType.GREATER,
+                    '=', AutomatonState.GREATER_EQUAL,
+                    '>', AutomatonState.RIGHT_SHIFT);
+            case GREATER_EQUAL -> endToken(TokenType.GREATER_EQUAL, TokenType.GREATER_EQUAL.getValue());
+            case RIGHT_SHIFT -> parseOperatorWithAlternative(TokenType.RIGHT_SHIFT,
+                    '=', AutomatonState.RIGHT_SHIFT_ASSIGN);
+            case RIGHT_SHIFT_ASSIGN -> endToken(TokenType.RIGHT_SHIFT_ASSIGN, TokenType.RIGHT_SHIFT_ASSIGN.getValue());
+            case BITWISE_AND -> parseOperatorWithAlternative(TokenType.BITWISE_AND,
+                    '=', AutomatonState.BITWISE_AND_ASSIGN);
+            case BITWISE_AND_ASSIGN -> endToken(TokenType.BITWISE_AND_ASSIGN, TokenType.BITWISE_AND_ASSIGN.getValue());
+            case BITWISE_OR -> parseOperatorWithAlternative(TokenType.BITWISE_OR,
+                    '=', AutomatonState.BITWISE_OR_ASSIGN);
+            case BITWISE_OR_ASSIGN -> endToken(TokenType.BITWISE_OR_ASSIGN, TokenType.BITWISE_OR_ASSIGN.getValue());
+            case BITWISE_XOR -> parseOperatorWithAlternative(TokenType.BITWISE_XOR,
+                    '=', AutomatonState.BITWISE_XOR_ASSIGN);
+            case BITWISE_XOR_ASSIGN -> endToken(TokenType.BITWISE_XOR_ASSIGN, TokenType.BITWISE_XOR_ASSIGN.getValue());
+            case BITWISE_NOT -> endToken(TokenType.BITWISE_NOT, TokenType.BITWISE_NOT.getValue());
+            case ASSIGN -> parseOperatorWithAlternative(TokenType.ASSIGN,
+                    '=', AutomatonState.EQUAL);
+            case EQUAL -> endToken(TokenType.EQUAL, TokenType.EQUAL.getValue());
+            case LEFT_PARENTHESIS -> endToken(TokenType.LEFT_PARENTHESIS, TokenType.LEFT_PARENTHESIS.getValue());
+            case RIGHT_PARENTHESIS -> endToken(TokenType.RIGHT_PARENTHESIS, TokenType.RIGHT_PARENTHESIS.getValue());
+            case LEFT_SQUARE_BRACKET -> endToken(TokenType.LEFT_SQUARE_BRACKET, TokenType.LEFT_SQUARE_BRACKET.getValue());
+            case RIGHT_SQUARE_BRACKET -> endToken(TokenType.RIGHT_SQUARE_BRACKET, TokenType.RIGHT_SQUARE_BRACKET.getValue());
+            case LEFT_CURLY_BRACKET -> endToken(TokenType.LEFT_CURLY_BRACKET, TokenType.LEFT_CURLY_BRACKET.getValue());
+            case RIGHT_CURLY_BRACKET -> endToken(TokenType.RIGHT_CURLY_BRACKET, TokenType.RIGHT_CURLY_BRACKET.getValue());
+            case COMMA -> endToken(TokenType.COMMA, TokenType.COMMA.getValue());
+            case COLON -> parseOperatorWithAlternative(TokenType.COLON,
+                    '=', AutomatonState.COLON_ASSIGN);
+            case DOT -> parseDot();
+            case COLON_ASSIGN -> endToken(TokenType.COLON_ASSIGN, TokenType.COLON_ASSIGN.getValue());
+            case SEMICOLON -> endToken(TokenType.SEMICOLON, TokenType.SEMICOLON.getValue());
+            case EXCLAMATION_MARK -> parseExclamationMark();
+            case NOT_EQUAL -> endToken(TokenType.NOT_EQUAL, TokenType.NOT_EQUAL.getValue());
+            case ZERO_INTEGER_OR_RADIX -> parseZeroIntegerOrRadix();
+            case BINARY_INTEGER_START -> parseBinaryIntegerStart();
+            case OCTAL_INTEGER_START -> parseOctalIntegerStart();
+            case HEX_INTEGER_START -> parseHexIntegerStart();
+            case BINARY_INTEGER -> parseBinaryInteger();
+            case OCTAL_INTEGER -> parseOctalInteger();
+            case HEX_INTEGER -> parseHexInteger();
+            case DECIMAL_INTEGER -> parseDecimalInteger();
+            case FLOAT -> parseFloat();
+            case IMAGINARY -> endNumericToken(TokenType.IMAGINARY_LITERAL);
+            case ZERO_INTEGER -> parseZeroInteger();
+            case INTEGER_WITH_ZERO_PREFIX -> parseIntegerWithZeroPrefix();
+            case EXPONENT_FLOAT_ON_INTEGER -> parseExponentFloatOnInteger();
+            case EXPONENT_FLOAT_ON_ZERO_PREFIX_INTEGER -> parseExponentFloatOnZeroPrefixInteger();
+            case EXPONENT_FLOAT_ON_FLOAT -> parseExponentFloatOnFloat();
+            case SIGNED_EXPONENT_FLOAT_ON_INTEGER -> parseSignedExponentFloatOnInteger();
+            case SIGNED_EXPONENT_FLOAT_ON_ZERO_PREFIX_INTEGER -> parseSignedExponentFloatOnZeroPrefixInteger();
+            case SIGNED_EXPONENT_FLOAT_ON_FLOAT -> parseSignedExponentFloatOnFloat();
+            case EXPONENT_FLOAT -> parseExponentFloat();
+            case MALFORMED_NUMERIC_LITERAL -> parseMalformedNumericLiteral();
+            case IDENTIFIER_OR_STRING_LITERAL -> parseIdentifierOrStringLiteral();
+            case SINGLE_OR_TRIPLE_QUOTED_STRING -> parseSingleOrTripleQuotedString();
+            case CLOSED_SINGLE_OR_OPENED_TRIPLE_QUOTED_STRING -> parseClosedSingleOrOpenedTripleQuotedString();
+            case SINGLE_QUOTED_STRING -> parseSingleQuotedString();
+            case TRIPLE_QUOTED_STRING -> parseTripleQuotedString();
+            case ESCAPE -> parseEscaped();
+            case OCTAL_ESCAPE -> parseOctalEscape();
+            case HEX_ESCAPE -> parseHexEscape();
+            case NAMED_ESCAPE -> parseNamedEscape();
+            case TRIPLE_QUOTED_STRING_WITH_QUOTE -> parseTripleQuotedStringWithQuote();
+            case TRIPLE_QUOTED_STRING_WITH_DOUBLE_QUOTE -> parseTripleQuotedStringWithDoubleQuote();
+            case FORMAT_FIELD_START -> parseFormatFieldStart();
+            case FORMAT_FIELD -> parseFormatField();
+            case FORMAT_FIELD_STRING -> parseFormatFieldString();
+            case FORMAT_FIELD_ESCAPE -> parseFormatFieldEscape();
+            case FIRST_INDENT -> parseFirstIndent();
+            case INDENT -> parseIndent();
+            case BACKSLASH -> parseBackslash();
+            case COMMENT -> skipComment();
+        }
+    }
+
+    // Reads through a private buffer, as the read() of most streams is synchronized.
+    private int read() throws IOException {
+        if (inputPosition == inputLimit) {
+            inputLimit = in.read(input, 0, input.length);
+            inputPosition = 0;
+            if (inputLimit <= 0) {
+                inputLimit = 0;
+                return -1;
             }
         }
+        return input[inputPosition++] & 0xFF;
     }
 
     private void startToken(AutomatonState state) {
@@ -188,11 +348,62 @@ public class Lexer {
         blankLine = false;
     }
 
-    private void endToken(TokenType type, String value) {
-        tokens.add(new Token(type, value, tokenStartRow, tokenStartColumn));
+    private void endToken(TokenType type, CharSequence value) {
+        addToken(type, value, tokenStartRow, tokenStartColumn);
         clearBufferAndSwitchState();
     }
 
+    private void addToken(TokenType type, CharSequence value, int line, int column) {
+        if (finished) {
+            // An error stopped the lexer earlier in this step.
+            return;
+        }
+        producedTokens++;
+        if (type == TokenType.ERROR && failFast) {
+            finished = true;
+        }
+        if (selectedTypes.contains(type)) {
+            enqueue().set(type, value, line, column);
+        }
+    }
+
+    private TokenCursor enqueue() {
+        if (pendingSize == pending.length) {
+            TokenCursor[] grown = new TokenCursor[pending.length * 2];
+            for (int i = 0; i < pending.length; i++) {
+                grown[i] = pending[(pendingStart + i) % pending.length];
+            }
+            for (int i = pending.length; i < grown.length; i++) {
+                grown[i] = new TokenCursor();
+            }
+            pending = grown;
+            pendingStart = 0;
+        }
+        return pending[(pendingStart + pendingSize++) % pending.length];
+    }
+
+    private static void addKeyword(TokenType type) {
+        int slot = keywordHash(type.getValue());
+        while (KEYWORDS[slot] != null) {
+            slot = (slot + 1) % KEYWORDS_TABLE_SIZE;
+        }
+        KEYWORDS[slot] = type;
+    }
+
+    private static TokenType findKeyword(CharSequence word) {
+        for (int slot = keywordHash(word); KEYWORDS[slot] != null; slot = (slot + 1) % KEYWORDS_TABLE_SIZE) {
+            String keyword = KEYWORDS[slot].getValue();
+            if (keyword.contentEquals(word)) {
+                return KEYWORDS[slot];
+            }
+        }
+        return null;
+    }
+
+    private static int keywordHash(CharSequence word) {
+        return (word.charAt(0) * 31 + word.charAt(word.length() - 1) * 7 + word.length()) % KEYWORDS_TABLE_SIZE;
+    }
+
     private void clearBufferAndSwitchState() {
         buffer.setLength(0);
         setStateByCurrentChar();
@@ -200,7 +411,7 @@ public class Lexer {
 
     private void setStateByCurrentChar() {
         if (Utils.isValidIdentifierStart(currentChar)) {
-            if (currentChar == 'U' || currentChar == 'u') {
+            if (Utils.isStringPrefixStart(currentChar)) {
                 startToken(AutomatonState.IDENTIFIER_OR_STRING_LITERAL);
             } else {
                 startToken(AutomatonState.KEYWORD_OR_IDENTIFIER);
@@ -232,17 +443,20 @@ public class Lexer {
         } else if (currentChar == '=') {
             startToken(AutomatonState.ASSIGN);
         } else if (currentChar == '(') {
+            openBracket();
             startToken(AutomatonState.LEFT_PARENTHESIS);
         } else if (currentChar == ')') {
-            startToken(AutomatonState.RIGHT_PARENTHESIS);
+            closeBracket('(', AutomatonState.RIGHT_PARENTHESIS);
         } else if (currentChar == '[') {
+            openBracket();
             startToken(AutomatonState.LEFT_SQUARE_BRACKET);
         } else if (currentChar == ']') {
-            startToken(AutomatonState.RIGHT_SQUARE_BRACKET);
+            closeBracket('[', AutomatonState.RIGHT_SQUARE_BRACKET);
         } else if (currentChar == '{') {
+            openBracket();
             startToken(AutomatonState.LEFT_CURLY_BRACKET);
         } else if (currentChar == '}') {
-            startToken(AutomatonState.RIGHT_CURLY_BRACKET);
+            closeBracket('{', AutomatonState.RIGHT_CURLY_BRACKET);
         } else if (currentChar == ',') {
             startToken(AutomatonState.COMMA);
         } else if (currentChar == '.') {
@@ -259,17 +473,13 @@ public class Lexer {
             } else {
                 startToken(AutomatonState.DECIMAL_INTEGER);
             }
-        } else if (currentChar == '\'') {
+        } else if (currentChar == '\'' || currentChar == '\"') {
             startToken(AutomatonState.SINGLE_OR_TRIPLE_QUOTED_STRING);
             buffer.setLength(0);
-        } else if (currentChar == '\"') {
-            startToken(AutomatonState.DOUBLE_QUOTED_STRING);
-            buffer.setLength(0);
-            currentStringType = StringType.DOUBLE_QUOTED;
+            openString();
         } else if (currentChar == '\n') {
             parseLineFeed();
         } else if (currentChar == '\\') {
-            in.mark(Integer.MAX_VALUE);
             startToken(AutomatonState.BACKSLASH);
         } else if (Character.isWhitespace(currentChar)) {
             if (blankLine && (currentChar == ' ' || currentChar == '\t')) {
@@ -280,20 +490,48 @@ public class Lexer {
         } else if (currentChar == '#') {
             state = AutomatonState.COMMENT;
         } else {
-            tokens.add(new Token(TokenType.ERROR, "Invalid symbol.", currentLine, currentColumn - 1));
+            addToken(TokenType.ERROR, "Invalid symbol.", currentLine, currentColumn - 1);
             state = AutomatonState.INITIAL;
         }
     }
 
+    private void openBracket() {
+        if (bracketDepth == 0) {
+            bracketLine = currentLine;
+            bracketColumn = currentColumn;
+        } else if (bracketDepth == openBrackets.length) {
+            openBrackets = Arrays.copyOf(openBrackets, bracketDepth * 2);
+        }
+        openBrackets[bracketDepth++] = currentChar;
+    }
+
+    // A mismatched closer still closes the innermost bracket, so a typo does not swallow the following lines.
+    private void closeBracket(char opening, AutomatonState closingState) {
+        if (bracketDepth > 0 && openBrackets[bracketDepth - 1] == opening) {
+            bracketDepth--;
+            startToken(closingState);
+            return;
+        }
+        if (bracketDepth > 0) {
+            bracketDepth--;
+            addToken(TokenType.ERROR, "Closing bracket does not match the opening one.", currentLine, currentColumn);
+        } else {
+            addToken(TokenType.ERROR, "Unmatched closing bracket.", currentLine, currentColumn);
+        }
+        blankLine = false;
+        state = AutomatonState.INITIAL;
+    }
+
     private void parseKeywordOrIdentifier() {
         if (Utils.isValidIdentifierPart(currentChar)) {
             buffer.append(currentChar);
+        } else if (!wordsSelected) {
+            producedTokens++;
+            clearBufferAndSwitchState();
         } else {
-            String value = buffer.toString();
-            TokenType type = KEYWORDS.get(value);
+            TokenType type = findKeyword(buffer);
 
-            tokens.add(new Token(
-                    Objects.requireNonNullElse(type, TokenType.IDENTIFIER), value, tokenStartRow, tokenStartColumn));
+            addToken(type != null ? type : TokenType.IDENTIFIER, buffer, tokenStartRow, tokenStartColumn);
             clearBufferAndSwitchState();
         }
     }
@@ -343,20 +581,19 @@ public class Lexer {
     }
 
     private void parseZeroIntegerOrRadix() {
+        if (parseDigitSeparator(10)) {
+            return;
+        }
         if (currentChar == 'B' || currentChar == 'b') {
-            in.mark(2);
             buffer.append(currentChar);
             state = AutomatonState.BINARY_INTEGER_START;
         } else if (currentChar == 'O' || currentChar == 'o') {
-            in.mark(2);
             buffer.append(currentChar);
             state = AutomatonState.OCTAL_INTEGER_START;
         } else if (currentChar == 'X' || currentChar == 'x') {
-            in.mark(2);
             buffer.append(currentChar);
             state = AutomatonState.HEX_INTEGER_START;
         } else if (currentChar == 'E' || currentChar == 'e') {
-            in.mark(3);
             buffer.append(currentChar);
             state = AutomatonState.EXPONENT_FLOAT_ON_INTEGER;
         } else if (currentChar == 'J' || currentChar == 'j') {
@@ -372,107 +609,100 @@ public class Lexer {
             buffer.append(currentChar);
             state = AutomatonState.INTEGER_WITH_ZERO_PREFIX;
         } else {
-            endToken(TokenType.INTEGER_LITERAL, buffer.toString());
+            endNumericToken(TokenType.INTEGER_LITERAL);
         }
     }
 
-    private void parseBinaryIntegerStart() throws IOException {
-        if (Utils.isCorrectDigit(currentChar, 2)) {
-            buffer.append(currentChar);
-            state = AutomatonState.BINARY_INTEGER;
-        } else {
-            in.reset();
-            currentColumn--;
-            currentChar = buffer.charAt(buffer.length() - 1);
-            buffer.delete(buffer.length() - 1, buffer.length());
-            endToken(TokenType.INTEGER_LITERAL, buffer.toString());
-        }
+    private void parseBinaryIntegerStart() {
+        parseRadixIntegerStart(2, AutomatonState.BINARY_INTEGER);
     }
 
-    private void parseOctalIntegerStart() throws IOException {
-        if (Utils.isCorrectDigit(currentChar, 8)) {
-            buffer.append(currentChar);
-            state = AutomatonState.OCTAL_INTEGER;
-        } else {
-            in.reset();
-            currentColumn--;
-            currentChar = buffer.charAt(buffer.length() - 1);
-            buffer.delete(buffer.length() - 1, buffer.length());
-            endToken(TokenType.INTEGER_LITERAL, buffer.toString());
-        }
+    private void parseOctalIntegerStart() {
+        parseRadixIntegerStart(8, AutomatonState.OCTAL_INTEGER);
     }
 
-    private void parseHexIntegerStart() throws IOException {
-        if (Utils.isCorrectDigit(currentChar, 16)) {
+    private void parseHexIntegerStart() {
+        parseRadixIntegerStart(16, AutomatonState.HEX_INTEGER);
+    }
+
+    private void parseRadixIntegerStart(int radix, AutomatonState integerState) {
+        if (Utils.isCorrectDigit(currentChar, radix)) {
             buffer.append(currentChar);
-            state = AutomatonState.HEX_INTEGER;
+            state = integerState;
+        } else if (currentChar == '_') {
+            buffer.append(currentChar);
+            digitSeparator = true;
+            state = integerState;
         } else {
-            in.reset();
-            currentColumn--;
-            currentChar = buffer.charAt(buffer.length() - 1);
-            buffer.delete(buffer.length() - 1, buffer.length());
-            endToken(TokenType.INTEGER_LITERAL, buffer.toString());
+            stepBack(1);
+            endNumericToken(TokenType.INTEGER_LITERAL);
         }
     }
 
     private void parseBinaryInteger() {
-        if (Utils.isCorrectDigit(currentChar, 2)) {
-            buffer.append(currentChar);
-        } else {
-            endToken(TokenType.INTEGER_LITERAL, buffer.toString());
-        }
+        parseRadixInteger(2);
     }
 
     private void parseOctalInteger() {
-        if (Utils.isCorrectDigit(currentChar, 8)) {
-            buffer.append(currentChar);
-        } else {
-            endToken(TokenType.INTEGER_LITERAL, buffer.toString());
-        }
+        parseRadixInteger(8);
     }
 
     private void parseHexInteger() {
-        if (Utils.isCorrectDigit(currentChar, 16)) {
+        parseRadixInteger(16);
+    }
+
+    private void parseRadixInteger(int radix) {
+        if (parseDigitSeparator(radix)) {
+            return;
+        }
+        if (Utils.isCorrectDigit(currentChar, radix)) {
             buffer.append(currentChar);
         } else {
-            endToken(TokenType.INTEGER_LITERAL, buffer.toString());
+            endNumericToken(TokenType.INTEGER_LITERAL);
         }
     }
 
     private void parseDecimalInteger() {
+        if (parseDigitSeparator(10)) {
+            return;
+        }
         if (Utils.isCorrectDigit(currentChar, 10)) {
             buffer.append(currentChar);
         } else if (currentChar == '.') {
             buffer.append(currentChar);
             state = AutomatonState.FLOAT;
         } else if (currentChar == 'E' || currentChar == 'e') {
-            in.mark(3);
             buffer.append(currentChar);
             state = AutomatonState.EXPONENT_FLOAT_ON_INTEGER;
         } else if (currentChar == 'J' || currentChar == 'j') {
             buffer.append(currentChar);
             state = AutomatonState.IMAGINARY;
         } else {
-            endToken(TokenType.INTEGER_LITERAL, buffer.toString());
+            endNumericToken(TokenType.INTEGER_LITERAL);
         }
     }
 
     private void parseFloat() {
+        if (parseDigitSeparator(10)) {
+            return;
+        }
         if (Utils.isCorrectDigit(currentChar, 10)) {
             buffer.append(currentChar);
         } else if (currentChar == 'E' || currentChar == 'e') {
-            in.mark(3);
             buffer.append(currentChar);
             state = AutomatonState.EXPONENT_FLOAT_ON_FLOAT;
         } else if (currentChar == 'J' || currentChar == 'j') {
             buffer.append(currentChar);
             state = AutomatonState.IMAGINARY;
         } else {
-            endToken(TokenType.FLOATING_POINT_LITERAL, buffer.toString());
+            endNumericToken(TokenType.FLOATING_POINT_LITERAL);
         }
     }
 
     private void parseZeroInteger() {
+        if (parseDigitSeparator(10)) {
+            return;
+        }
         if (currentChar == '0') {
             buffer.append(currentChar);
         } else if (Utils.isCorrectDigit(currentChar, 10)) {
@@ -482,25 +712,26 @@ public class Lexer {
             buffer.append(currentChar);
             state = AutomatonState.FLOAT;
         } else if (currentChar == 'E' || currentChar == 'e') {
-            in.mark(3);
             buffer.append(currentChar);
             state = AutomatonState.EXPONENT_FLOAT_ON_INTEGER;
         } else if (currentChar == 'J' || currentChar == 'j') {
             buffer.append(currentChar);
             state = AutomatonState.IMAGINARY;
         } else {
-            endToken(TokenType.INTEGER_LITERAL, buffer.toString());
+            endNumericToken(TokenType.INTEGER_LITERAL);
         }
     }
 
     private void parseIntegerWithZeroPrefix() {
+        if (parseDigitSeparator(10)) {
+            return;
+        }
         if (Utils.isCorrectDigit(currentChar, 10)) {
             buffer.append(currentChar);
         } else if (currentChar == '.') {
             buffer.append(currentChar);
             state = AutomatonState.FLOAT;
         } else if (currentChar == 'E' || currentChar == 'e') {
-            in.mark(3);
             buffer.append(currentChar);
             state = AutomatonState.EXPONENT_FLOAT_ON_ZERO_PREFIX_INTEGER;
         } else if (currentChar == 'J' || currentChar == 'j') {
@@ -511,7 +742,7 @@ public class Lexer {
         }
     }
 
-    private void parseExponentFloatOnInteger() throws IOException {
+    private void parseExponentFloatOnInteger() {
         if (Utils.isCorrectDigit(currentChar, 10)) {
             buffer.append(currentChar);
             state = AutomatonState.EXPONENT_FLOAT;
@@ -519,15 +750,12 @@ public class Lexer {
             buffer.append(currentChar);
             state = AutomatonState.SIGNED_EXPONENT_FLOAT_ON_INTEGER;
         } else {
-            in.reset();
-            currentColumn--;
-            currentChar = buffer.charAt(buffer.length() - 1);
-            buffer.delete(buffer.length() - 1, buffer.length());
-            endToken(TokenType.INTEGER_LITERAL, buffer.toString());
+            stepBack(1);
+            endNumericToken(TokenType.INTEGER_LITERAL);
         }
     }
 
-    private void parseExponentFloatOnZeroPrefixInteger() throws IOException {
+    private void parseExponentFloatOnZeroPrefixInteger() {
         if (Utils.isCorrectDigit(currentChar, 10)) {
             buffer.append(currentChar);
             state = AutomatonState.EXPONENT_FLOAT;
@@ -535,15 +763,12 @@ public class Lexer {
             buffer.append(currentChar);
             state = AutomatonState.SIGNED_EXPONENT_FLOAT_ON_ZERO_PREFIX_INTEGER;
         } else {
-            in.reset();
-            currentColumn--;
-            currentChar = buffer.charAt(buffer.length() - 1);
-            buffer.delete(buffer.length() - 1, buffer.length());
+            stepBack(1);
             endToken(TokenType.ERROR, "Integer literal cannot start with 0.");
         }
     }
 
-    private void parseExponentFloatOnFloat() throws IOException {
+    private void parseExponentFloatOnFloat() {
         if (Utils.isCorrectDigit(currentChar, 10)) {
             buffer.append(currentChar);
             state = AutomatonState.EXPONENT_FLOAT;
@@ -551,196 +776,461 @@ public class Lexer {
             buffer.append(currentChar);
             state = AutomatonState.SIGNED_EXPONENT_FLOAT_ON_FLOAT;
         } else {
-            in.reset();
-            currentColumn--;
-            currentChar = buffer.charAt(buffer.length() - 1);
-            buffer.delete(buffer.length() - 1, buffer.length());
-            endToken(TokenType.FLOATING_POINT_LITERAL, buffer.toString());
+            stepBack(1);
+            endNumericToken(TokenType.FLOATING_POINT_LITERAL);
         }
     }
 
-    private void parseSignedExponentFloatOnInteger() throws IOException {
+    private void parseSignedExponentFloatOnInteger() {
         if (Utils.isCorrectDigit(currentChar, 10)) {
             buffer.append(currentChar);
             state = AutomatonState.EXPONENT_FLOAT;
         } else {
-            in.reset();
-            currentColumn -= 2;
-            currentChar = buffer.charAt(buffer.length() - 2);
-            buffer.delete(buffer.length() - 2, buffer.length());
-            endToken(TokenType.INTEGER_LITERAL, buffer.toString());
+            stepBack(2);
+            endNumericToken(TokenType.INTEGER_LITERAL);
         }
     }
 
-    private void parseSignedExponentFloatOnZeroPrefixInteger() throws IOException {
+    private void parseSignedExponentFloatOnZeroPrefixInteger() {
         if (Utils.isCorrectDigit(currentChar, 10)) {
             buffer.append(currentChar);
             state = AutomatonState.EXPONENT_FLOAT;
         } else {
-            in.reset();
-            currentColumn -= 2;
-            currentChar = buffer.charAt(buffer.length() - 2);
-            buffer.delete(buffer.length() - 2, buffer.length());
+            stepBack(2);
             endToken(TokenType.ERROR, "Integer literal cannot start with 0.");
         }
     }
 
-    private void parseSignedExponentFloatOnFloat() throws IOException {
+    private void parseSignedExponentFloatOnFloat() {
         if (Utils.isCorrectDigit(currentChar, 10)) {
             buffer.append(currentChar);
             state = AutomatonState.EXPONENT_FLOAT;
         } else {
-            in.reset();
-            currentColumn -= 2;
-            currentChar = buffer.charAt(buffer.length() - 2);
-            buffer.delete(buffer.length() - 2, buffer.length());
-            endToken(TokenType.FLOATING_POINT_LITERAL, buffer.toString());
+            stepBack(2);
+            endNumericToken(TokenType.FLOATING_POINT_LITERAL);
         }
     }
 
     private void parseExponentFloat() {
+        if (parseDigitSeparator(10)) {
+            return;
+        }
         if (Utils.isCorrectDigit(currentChar, 10)) {
             buffer.append(currentChar);
+        } else if (currentChar == 'J' || currentChar == 'j') {
+            buffer.append(currentChar);
+            state = AutomatonState.IMAGINARY;
+        } else {
+            endNumericToken(TokenType.FLOATING_POINT_LITERAL);
+        }
+    }
+
+    private boolean parseDigitSeparator(int radix) {
+        if (digitSeparator) {
+            digitSeparator = false;
+            if (!Utils.isCorrectDigit(currentChar, radix)) {
+                state = AutomatonState.MALFORMED_NUMERIC_LITERAL;
+                parseMalformedNumericLiteral();
+                return true;
+            }
+        } else if (currentChar == '_' && Utils.isCorrectDigit(buffer.charAt(buffer.length() - 1), radix)) {
+            buffer.append(currentChar);
+            digitSeparator = true;
+            return true;
+        }
+        return false;
+    }
+
+    // The rest of the word belongs to the broken literal, so 1__0 is one error rather than an error and _0.
+    private void parseMalformedNumericLiteral() {
+        if (!Utils.isValidIdentifierPart(currentChar)) {
+            endToken(TokenType.ERROR, "Underscore in numeric literal must be followed by a digit.");
+        }
+    }
+
+    // Hands the current char and the last length - 1 buffered chars back to the input, so the char that
+    // preceded them becomes current again. The lookahead never exceeds two chars.
+    private void stepBack(int length) {
+        pushBack(currentChar);
+        for (int i = 1; i < length; i++) {
+            pushBack(buffer.charAt(buffer.length() - i));
+        }
+        currentColumn -= length;
+        currentChar = buffer.charAt(buffer.length() - length);
+        buffer.setLength(buffer.length() - length);
+    }
+
+    private void pushBack(char ch) {
+        lookahead[lookaheadLength++] = ch;
+    }
+
+    private void endNumericToken(TokenType type) {
+        if (!literalValues || !selectedTypes.contains(type)) {
+            endToken(type, buffer);
+            return;
+        }
+
+        producedTokens++;
+        TokenCursor token = enqueue();
+        token.set(type, buffer, tokenStartRow, tokenStartColumn);
+        if (type == TokenType.INTEGER_LITERAL) {
+            long parsed = NumericLiterals.parseInteger(buffer);
+            if (parsed >= 0) {
+                token.setIntegerValue(parsed);
+            } else {
+                token.setIntegerValue(NumericLiterals.parseBigInteger(buffer));
+            }
         } else {
-            endToken(TokenType.FLOATING_POINT_LITERAL, buffer.toString());
+            token.setFloatValue(NumericLiterals.parseFloat(buffer));
         }
+        clearBufferAndSwitchState();
     }
 
     //==========================PROCESSING STRING LITERALS==========================
 
     private void parseIdentifierOrStringLiteral() {
-        if (currentChar == '\'') {
-            buffer.setLength(0);
-            state = AutomatonState.SINGLE_OR_TRIPLE_QUOTED_STRING;
-        } else if (currentChar == '\"') {
-            buffer.setLength(0);
-            state = AutomatonState.DOUBLE_QUOTED_STRING;
-            currentStringType = StringType.DOUBLE_QUOTED;
+        if (currentChar == '\'' || currentChar == '\"') {
+            openString();
+        } else if (Utils.isValidIdentifierPart(currentChar)) {
+            buffer.append(currentChar);
+            if (!Utils.isStringPrefix(buffer)) {
+                state = AutomatonState.KEYWORD_OR_IDENTIFIER;
+            }
         } else {
             state = AutomatonState.KEYWORD_OR_IDENTIFIER;
             parseKeywordOrIdentifier();
         }
     }
 
+    private void openString() {
+        rawString = false;
+        currentStringLiteral = TokenType.STRING_LITERAL;
+        for (int i = 0; i < buffer.length(); i++) {
+            char prefix = Character.toLowerCase(buffer.charAt(i));
+            if (prefix == 'r') {
+                rawString = true;
+            } else if (prefix == 'b') {
+                currentStringLiteral = TokenType.BYTES_LITERAL;
+            } else if (prefix == 'f') {
+                currentStringLiteral = TokenType.FORMATTED_STRING_LITERAL;
+            }
+        }
+        buffer.setLength(0);
+        currentQuote = currentChar;
+        captureString = selectedTypes.contains(currentStringLiteral);
+        state = AutomatonState.SINGLE_OR_TRIPLE_QUOTED_STRING;
+    }
+
+    private void appendStringChar(char ch) {
+        if (captureString) {
+            buffer.append(ch);
+        }
+    }
+
     private void parseSingleOrTripleQuotedString() {
-        if (currentChar == '\'') {
+        if (currentChar == currentQuote) {
             state = AutomatonState.CLOSED_SINGLE_OR_OPENED_TRIPLE_QUOTED_STRING;
         } else {
             state = AutomatonState.SINGLE_QUOTED_STRING;
-            buffer.setLength(0);
             currentStringType = StringType.SINGLE_QUOTED;
             parseSingleQuotedString();
         }
     }
 
     private void parseClosedSingleOrOpenedTripleQuotedString() {
-        buffer.setLength(0);
-        if (currentChar == '\'') {
+        if (currentChar == currentQuote) {
             state = AutomatonState.TRIPLE_QUOTED_STRING;
             currentStringType = StringType.TRIPLE_QUOTED;
         } else {
             currentStringType = StringType.NONE;
-            endToken(TokenType.STRING_LITERAL, buffer.toString());
+            endToken(currentStringLiteral, buffer);
         }
     }
 
-    private void parseSingleQuotedString() {
-        if (currentChar == '\'') {
-            quitString();
-        } else if (currentChar == '\\') {
-            state = AutomatonState.ESCAPE;
-        } else if (currentChar == '\n') {
-            endToken(TokenType.ERROR, "Missing closing single quote.");
-            currentStringType = StringType.NONE;
+    private void parseStringBody() {
+        if (currentStringType == StringType.TRIPLE_QUOTED) {
+            state = AutomatonState.TRIPLE_QUOTED_STRING;
+            parseTripleQuotedString();
         } else {
-            buffer.append(currentChar);
+            state = AutomatonState.SINGLE_QUOTED_STRING;
+            parseSingleQuotedString();
         }
     }
 
-    private void parseDoubleQuotedString() {
-        if (currentChar == '\"') {
+    private void parseSingleQuotedString() {
+        if (currentChar == currentQuote) {
             quitString();
         } else if (currentChar == '\\') {
             state = AutomatonState.ESCAPE;
         } else if (currentChar == '\n') {
-            endToken(TokenType.ERROR, "Missing closing double quote.");
-            currentStringType = StringType.NONE;
+            missingClosingQuote();
+        } else if (currentChar == '{' && currentStringLiteral == TokenType.FORMATTED_STRING_LITERAL) {
+            state = AutomatonState.FORMAT_FIELD_START;
         } else {
-            buffer.append(currentChar);
+            appendStringChar(currentChar);
         }
     }
 
     private void parseTripleQuotedString() {
-        if (currentChar == '\'') {
-            buffer.append(currentChar);
+        if (currentChar == currentQuote) {
+            appendStringChar(currentChar);
             state = AutomatonState.TRIPLE_QUOTED_STRING_WITH_QUOTE;
         } else if (currentChar == '\\') {
             state = AutomatonState.ESCAPE;
+        } else if (currentChar == '{' && currentStringLiteral == TokenType.FORMATTED_STRING_LITERAL) {
+            state = AutomatonState.FORMAT_FIELD_START;
         } else {
             if (currentChar == '\n') {
-                currentLine++;
+                nextLine();
             }
-            buffer.append(currentChar);
+            appendStringChar(currentChar);
         }
     }
 
     private void parseTripleQuotedStringWithQuote() {
-        if (currentChar == '\'') {
-            buffer.append(currentChar);
+        if (currentChar == currentQuote) {
+            appendStringChar(currentChar);
             state = AutomatonState.TRIPLE_QUOTED_STRING_WITH_DOUBLE_QUOTE;
         } else {
             state = AutomatonState.TRIPLE_QUOTED_STRING;
-            parseSingleQuotedString();
+            parseTripleQuotedString();
         }
     }
 
     private void parseTripleQuotedStringWithDoubleQuote() {
-        if (currentChar == '\'') {
-            buffer.delete(buffer.length() - 2, buffer.length());
+        if (currentChar == currentQuote) {
+            if (captureString) {
+                buffer.delete(buffer.length() - 2, buffer.length());
+            }
             quitString();
         } else {
             state = AutomatonState.TRIPLE_QUOTED_STRING;
-            parseSingleQuotedString();
+            parseTripleQuotedString();
         }
     }
 
     private void quitString() {
-        tokens.add(new Token(TokenType.STRING_LITERAL, buffer.toString(), tokenStartRow, tokenStartColumn));
+        addToken(currentStringLiteral, buffer, tokenStartRow, tokenStartColumn);
         buffer.setLength(0);
         state = AutomatonState.INITIAL;
         currentStringType = StringType.NONE;
     }
 
+    private void missingClosingQuote() {
+        currentStringType = StringType.NONE;
+        endToken(TokenType.ERROR, currentQuote == '\'' ? "Missing closing single quote." : "Missing closing double quote.");
+    }
+
+    //===========================PROCESSING ESCAPE SEQUENCES==========================
+
     private void parseEscaped() {
-        Character escaped = Utils.escapeChar(currentChar);
+        if (currentChar == '\n') {
+            if (rawString) {
+                appendStringChar('\\');
+                appendStringChar(currentChar);
+            }
+            nextLine();
+            backToStringBody();
+            return;
+        }
+        if (rawString) {
+            appendStringChar('\\');
+            if (currentChar == '{' && currentStringLiteral == TokenType.FORMATTED_STRING_LITERAL) {
+                state = AutomatonState.FORMAT_FIELD_START;
+            } else {
+                appendStringChar(currentChar);
+                backToStringBody();
+            }
+            return;
+        }
 
-        if (escaped != null) {
-            buffer.append(escaped);
+        int escaped = Utils.escapeChar(currentChar);
+        boolean bytes = currentStringLiteral == TokenType.BYTES_LITERAL;
+
+        escapeStart = buffer.length();
+        escapeValue = 0;
+        escapeDigits = 0;
+        appendStringChar('\\');
+        if (escaped >= 0) {
+            completeEscape(escaped);
+            backToStringBody();
+            return;
+        } else if (currentChar == '{' && currentStringLiteral == TokenType.FORMATTED_STRING_LITERAL) {
+            state = AutomatonState.FORMAT_FIELD_START;
+            return;
+        }
+
+        appendStringChar(currentChar);
+        if (Utils.isCorrectDigit(currentChar, 8)) {
+            escapeValue = currentChar - '0';
+            escapeDigits = 1;
+            state = AutomatonState.OCTAL_ESCAPE;
+        } else if (currentChar == 'x') {
+            startHexEscape(2);
+        } else if (currentChar == 'u' && !bytes) {
+            startHexEscape(4);
+        } else if (currentChar == 'U' && !bytes) {
+            startHexEscape(8);
+        } else if (currentChar == 'N' && !bytes) {
+            state = AutomatonState.NAMED_ESCAPE;
         } else {
-            buffer.append('\\');
-            buffer.append(currentChar);
+            backToStringBody();
         }
-        switch (currentStringType) {
-            case SINGLE_QUOTED -> state = AutomatonState.SINGLE_QUOTED_STRING;
-            case DOUBLE_QUOTED -> state = AutomatonState.DOUBLE_QUOTED_STRING;
-            case TRIPLE_QUOTED -> state = AutomatonState.TRIPLE_QUOTED_STRING;
+    }
+
+    private void startHexEscape(int length) {
+        escapeLength = length;
+        state = AutomatonState.HEX_ESCAPE;
+    }
+
+    // The digits are counted apart from the buffer, which only holds them when the string is captured.
+    private void parseOctalEscape() {
+        if (Utils.isCorrectDigit(currentChar, 8)) {
+            escapeValue = escapeValue * 8 + (currentChar - '0');
+            appendStringChar(currentChar);
+            if (++escapeDigits == 3) {
+                completeEscape(escapeValue);
+                backToStringBody();
+            }
+        } else {
+            completeEscape(escapeValue);
+            parseStringBody();
         }
     }
 
+    private void parseHexEscape() {
+        if (Utils.isCorrectDigit(currentChar, 16)) {
+            escapeValue = escapeValue * 16 + Character.digit(currentChar, 16);
+            appendStringChar(currentChar);
+            if (++escapeDigits == escapeLength) {
+                if (Character.isValidCodePoint(escapeValue)) {
+                    completeEscape(escapeValue);
+                }
+                backToStringBody();
+            }
+        } else {
+            parseStringBody();
+        }
+    }
+
+    private void parseNamedEscape() {
+        boolean opened = escapeDigits > 0;
+
+        if ((!opened && currentChar != '{') || currentChar == currentQuote || currentChar == '\n') {
+            parseStringBody();
+        } else if (currentChar == '}') {
+            appendStringChar(currentChar);
+            if (captureString) {
+                try {
+                    completeEscape(Character.codePointOf(buffer.substring(escapeStart + 3, buffer.length() - 1)));
+                } catch (IllegalArgumentException e) {
+                    // unknown character name, the sequence is kept as written
+                }
+            }
+            backToStringBody();
+        } else {
+            appendStringChar(currentChar);
+            escapeDigits++;
+        }
+    }
+
+    private void completeEscape(int codePoint) {
+        if (captureString) {
+            buffer.setLength(escapeStart);
+            buffer.appendCodePoint(codePoint);
+        }
+    }
+
+    private void backToStringBody() {
+        state = currentStringType == StringType.TRIPLE_QUOTED
+                ? AutomatonState.TRIPLE_QUOTED_STRING
+                : AutomatonState.SINGLE_QUOTED_STRING;
+    }
+
+    //=====================PROCESSING FORMATTED STRING REPLACEMENT FIELDS=====================
+
+    private void parseFormatFieldStart() {
+        appendStringChar('{');
+        if (currentChar == '{') {
+            appendStringChar(currentChar);
+            backToStringBody();
+        } else {
+            formatFieldDepth = 1;
+            formatSpec = false;
+            state = AutomatonState.FORMAT_FIELD;
+            parseFormatField();
+        }
+    }
+
+    private void parseFormatField() {
+        if (currentChar == '\n' && currentStringType != StringType.TRIPLE_QUOTED) {
+            missingClosingQuote();
+            return;
+        } else if (currentChar == '\n') {
+            nextLine();
+        }
+        appendStringChar(currentChar);
+
+        if ((currentChar == '\'' || currentChar == '\"') && !formatSpec) {
+            formatFieldQuote = currentChar;
+            state = AutomatonState.FORMAT_FIELD_STRING;
+        } else if (currentChar == '{' || (currentChar == '(' || currentChar == '[') && !formatSpec) {
+            formatFieldDepth++;
+        } else if ((currentChar == ')' || currentChar == ']') && !formatSpec) {
+            formatFieldDepth = Math.max(1, formatFieldDepth - 1);
+        } else if (currentChar == '}') {
+            if (--formatFieldDepth == 0) {
+                backToStringBody();
+            }
+        } else if (currentChar == ':' && formatFieldDepth == 1) {
+            formatSpec = true;
+        }
+    }
+
+    private void parseFormatFieldString() {
+        if (currentChar == '\n' && currentStringType != StringType.TRIPLE_QUOTED) {
+            missingClosingQuote();
+            return;
+        } else if (currentChar == '\n') {
+            nextLine();
+        }
+        appendStringChar(currentChar);
+
+        if (currentChar == '\\') {
+            state = AutomatonState.FORMAT_FIELD_ESCAPE;
+        } else if (currentChar == formatFieldQuote) {
+            state = AutomatonState.FORMAT_FIELD;
+        }
+    }
+
+    private void parseFormatFieldEscape() {
+        if (currentChar == '\n') {
+            nextLine();
+        }
+        appendStringChar(currentChar);
+        state = AutomatonState.FORMAT_FIELD_STRING;
+    }
+
     //================================PROCESSING LINE================================
 
     private void parseLineFeed() {
-        if (!blankLine) {
-            tokens.add(new Token(TokenType.NEWLINE, TokenType.NEWLINE.getValue(), currentLine, currentColumn));
+        if (bracketDepth > 0) {
+            state = AutomatonState.INITIAL;
+        } else if (!blankLine) {
+            addToken(TokenType.NEWLINE, TokenType.NEWLINE.getValue(), currentLine, currentColumn);
             currentIndent = 0;
             blankLine = true;
             state = AutomatonState.INDENT;
-        } else if (tokens.isEmpty()) {
+        } else if (producedTokens == 0) {
             state = AutomatonState.INITIAL;
         } else {
             state = AutomatonState.INDENT;
         }
 
+        nextLine();
+    }
+
+    private void nextLine() {
         currentLine++;
         currentColumn = -1;
     }
@@ -750,13 +1240,12 @@ public class Lexer {
             if (currentChar == '#') {
                 setStateByCurrentChar();
             } else {
-                tokens.add(new Token(TokenType.ERROR, "Unexpected indent.", currentLine, currentColumn - 1));
+                addToken(TokenType.ERROR, "Unexpected indent.", currentLine, currentColumn - 1);
                 blankLine = false;
                 setStateByCurrentChar();
             }
         } else if (currentChar == '\n') {
-            currentLine++;
-            currentColumn = -1;
+            nextLine();
             setStateByCurrentChar();
         }
     }
@@ -777,18 +1266,25 @@ public class Lexer {
         } else if (currentChar == '#') {
             setStateByCurrentChar();
         } else {
-            if (currentIndent > indentsStack.get(indentsStack.size() - 1)) {
-                indentsStack.add(currentIndent);
-                tokens.add(new Token(TokenType.INDENT, TokenType.INDENT.getValue(), currentLine, currentIndent));
-            } else if (currentIndent < indentsStack.getLast()) {
-                if (indentsStack.contains(currentIndent)) {
-                    while (indentsStack.getLast() > currentIndent) {
-                        int popped = indentsStack.removeLast();
-                        tokens.add(new Token(TokenType.DEDENT, TokenType.DEDENT.getValue(), currentLine, popped));
+            if (currentIndent > indentsStack[indentsStackSize - 1]) {
+                if (indentsStackSize == indentsStack.length) {
+                    indentsStack = Arrays.copyOf(indentsStack, indentsStackSize * 2);
+                }
+                indentsStack[indentsStackSize++] = currentIndent;
+                addToken(TokenType.INDENT, TokenType.INDENT.getValue(), currentLine, currentIndent);
+            } else if (currentIndent < indentsStack[indentsStackSize - 1]) {
+                int outer = indentsStackSize - 1;
+                while (indentsStack[outer] > currentIndent) {
+                    outer--;
+                }
+                if (indentsStack[outer] == currentIndent) {
+                    while (indentsStackSize - 1 > outer) {
+                        int popped = indentsStack[--indentsStackSize];
+                        addToken(TokenType.DEDENT, TokenType.DEDENT.getValue(), currentLine, popped);
                     }
                 } else {
-                    tokens.add(new Token(TokenType.ERROR, "Unindent does not match to any outer indentation level.",
-                            currentLine, currentIndent));
+                    addToken(TokenType.ERROR, "Unindent does not match to any outer indentation level.",
+                            currentLine, currentIndent);
                 }
             }
             blankLine = false;
@@ -796,18 +1292,16 @@ public class Lexer {
         }
     }
 
-    private void parseBackslash() throws IOException {
+    private void parseBackslash() {
         if (!Character.isWhitespace(currentChar)) {
-            in.reset();
-            currentColumn = tokenStartColumn + 1;
-            tokens.add(new Token(TokenType.ERROR, "Backslash does not continue a line.", tokenStartRow,
-                    tokenStartColumn));
+            addToken(TokenType.ERROR, "Backslash does not continue a line.", tokenStartRow,
+                    tokenStartColumn);
             buffer.setLength(0);
-            state = AutomatonState.INITIAL;
+            setStateByCurrentChar();
         } else if (currentChar == '\n') {
             buffer.setLength(0);
             state = AutomatonState.INITIAL;
-            currentLine++;
+            nextLine();
         }
     }
 
@@ -1,30 +1,150 @@
 package cyb.lexer;
 
+import cyb.lexer.batch.ParallelLexing;
+import cyb.lexer.json.JsonWriter;
+
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 
 public class Main {
+    private static final String USAGE = "Usage: Main [--format=lines|tsv|json] [--output=<file>] [file...]\n"
+            + "Reads standard input when no file or '-' is given.";
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    private enum Format {
+        LINES,
+        TSV,
+        JSON
+    }
 
     public static void main(String[] args) {
-        try {
-            InputStream in = new BufferedInputStream(new FileInputStream("src/main/resources/main1.py"));
-            Lexer lexer = new Lexer(in);
-            List<Token> tokens = lexer.analyze();
-            int currentLine = -1;
-            for (Token token : tokens) {
-                if (token.getLine() != currentLine) {
-                    System.out.println();
-                    currentLine = token.getLine();
-                    System.out.print(currentLine + ":     ");
+        Format format = Format.LINES;
+        String output = null;
+        List<String> files = new ArrayList<>();
+
+        for (String arg : args) {
+            if (arg.startsWith("--format=")) {
+                try {
+                    format = Format.valueOf(arg.substring("--format=".length()).toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    usage("Unknown format: " + arg.substring("--format=".length()));
                 }
-                System.out.print("(" + token.getType().toString());
-                if (!token.getValue().equals("") || token.getType() == TokenType.STRING_LITERAL) {
-                    System.out.print(", " + token.getValue());
+            } else if (arg.startsWith("--output=")) {
+                output = arg.substring("--output=".length());
+            } else if (arg.equals("--help") || arg.equals("-h")) {
+                System.out.println(USAGE);
+                return;
+            } else if (arg.startsWith("--")) {
+                usage("Unknown option: " + arg);
+            } else {
+                files.add(arg);
+            }
+        }
+        if (files.isEmpty()) {
+            files.add("-");
+        }
+
+        boolean failed = false;
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(output == null
+                ? new FileOutputStream(FileDescriptor.out) : new FileOutputStream(output), StandardCharsets.UTF_8),
+                OUTPUT_BUFFER_SIZE)) {
+            TokenPrinter printer = new TokenPrinter(format, out, files.size() > 1);
+            for (String file : files) {
+                try (InputStream in = file.equals("-") ? System.in : new FileInputStream(file)) {
+                    printer.print(file.equals("-") ? "<stdin>" : file, in);
+                } catch (FileNotFoundException e) {
+                    System.err.println(e.getMessage());
+                    failed = true;
                 }
-                System.out.print(")  ");
             }
         } catch (IOException e) {
             e.printStackTrace();
+            failed = true;
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+
+    private static class TokenPrinter {
+        private final Format format;
+        private final Writer out;
+        private final boolean multipleFiles;
+        private final TokenCursor cursor = new TokenCursor();
+        private final StringBuilder line = new StringBuilder();
+        private final Lexer lexer = ParallelLexing.reusableLexer();
+
+        TokenPrinter(Format format, Writer out, boolean multipleFiles) {
+            this.format = format;
+            this.out = out;
+            this.multipleFiles = multipleFiles;
+        }
+
+        void print(String name, InputStream in) throws IOException {
+            lexer.reset(in);
+            if (format == Format.LINES && multipleFiles) {
+                out.write("==> " + name + " <==\n");
+            }
+
+            int currentLine = -1;
+            while (lexer.next(cursor)) {
+                line.setLength(0);
+                switch (format) {
+                    case LINES -> {
+                        if (cursor.getLine() != currentLine) {
+                            currentLine = cursor.getLine();
+                            line.append('\n').append(currentLine).append(":     ");
+                        }
+                        line.append('(').append(cursor.getType());
+                        if (cursor.getValue().length() > 0 || cursor.getType() == TokenType.STRING_LITERAL
+                                || cursor.getType() == TokenType.BYTES_LITERAL
+                                || cursor.getType() == TokenType.FORMATTED_STRING_LITERAL) {
+                            line.append(", ").append(cursor.getValue());
+                        }
+                        line.append(")  ");
+                    }
+                    case TSV -> {
+                        line.append(name).append('\t').append(cursor.getLine() + 1).append('\t')
+                                .append(cursor.getColumn() + 1).append('\t').append(cursor.getType()).append('\t');
+                        appendEscaped(cursor.getValue());
+                        line.append('\n');
+                    }
+                    case JSON -> {
+                        line.append("{\"file\":");
+                        JsonWriter.writeString(name, line);
+                        line.append(",\"line\":").append(cursor.getLine() + 1)
+                                .append(",\"column\":").append(cursor.getColumn() + 1)
+                                .append(",\"type\":\"").append(cursor.getType()).append("\",\"value\":");
+                        JsonWriter.writeString(cursor.getValue(), line);
+                        line.append("}\n");
+                    }
+                }
+                out.append(line);
+            }
+            if (format == Format.LINES) {
+                out.write('\n');
+            }
+        }
+
+        private void appendEscaped(CharSequence value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '\t' -> line.append("\\t");
+                    case '\n' -> line.append("\\n");
+                    case '\r' -> line.append("\\r");
+                    case '\\' -> line.append("\\\\");
+                    default -> line.append(c);
+                }
+            }
         }
     }
 }
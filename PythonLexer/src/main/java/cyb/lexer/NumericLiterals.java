@@ -0,0 +1,127 @@
+package cyb.lexer;
+
+import java.math.BigInteger;
+
+public abstract class NumericLiterals {
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final int MAX_EXACT_POWER = 22;
+    private static final double[] POWERS_OF_TEN = new double[MAX_EXACT_POWER + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i <= MAX_EXACT_POWER; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /**
+     * Returns the value of an integer literal, or -1 if it does not fit into a long.
+     */
+    public static long parseInteger(CharSequence literal) {
+        int radix = radix(literal);
+        long limit = Long.MAX_VALUE / radix;
+        long value = 0;
+
+        for (int i = radix == 10 ? 0 : 2; i < literal.length(); i++) {
+            char ch = literal.charAt(i);
+            if (ch == '_') {
+                continue;
+            }
+            int digit = Character.digit(ch, radix);
+            if (value > limit || value * radix > Long.MAX_VALUE - digit) {
+                return -1;
+            }
+            value = value * radix + digit;
+        }
+        return value;
+    }
+
+    public static BigInteger parseBigInteger(CharSequence literal) {
+        int radix = radix(literal);
+        return new BigInteger(digits(literal, radix == 10 ? 0 : 2, literal.length()), radix);
+    }
+
+    /**
+     * Returns the value of a floating point literal or of the imaginary part of an imaginary literal.
+     * Literals whose significand and decimal exponent are both exactly representable are converted
+     * with a single multiplication or division, everything else falls back to {@link Double#parseDouble}.
+     */
+    public static double parseFloat(CharSequence literal) {
+        int length = literal.length();
+        char last = literal.charAt(length - 1);
+        if (last == 'j' || last == 'J') {
+            length--;
+        }
+
+        long mantissa = 0;
+        int exponent = 0;
+        boolean fraction = false;
+        boolean exact = true;
+        int i = 0;
+
+        for (; i < length; i++) {
+            char ch = literal.charAt(i);
+            if (ch == 'e' || ch == 'E') {
+                break;
+            } else if (ch == '.') {
+                fraction = true;
+            } else if (ch != '_') {
+                mantissa = mantissa * 10 + (ch - '0');
+                if (mantissa > MAX_EXACT_MANTISSA) {
+                    exact = false;
+                    break;
+                }
+                if (fraction) {
+                    exponent--;
+                }
+            }
+        }
+
+        if (exact && i < length) {
+            boolean negative = literal.charAt(++i) == '-';
+            if (negative || literal.charAt(i) == '+') {
+                i++;
+            }
+            int explicitExponent = 0;
+            for (; i < length && explicitExponent <= MAX_EXACT_POWER * 2; i++) {
+                char ch = literal.charAt(i);
+                if (ch != '_') {
+                    explicitExponent = explicitExponent * 10 + (ch - '0');
+                }
+            }
+            exact = i == length;
+            exponent += negative ? -explicitExponent : explicitExponent;
+        }
+
+        if (exact && exponent >= 0 && exponent <= MAX_EXACT_POWER) {
+            return mantissa * POWERS_OF_TEN[exponent];
+        } else if (exact && exponent < 0 && exponent >= -MAX_EXACT_POWER) {
+            return mantissa / POWERS_OF_TEN[-exponent];
+        }
+        return Double.parseDouble(digits(literal, 0, length));
+    }
+
+    private static int radix(CharSequence literal) {
+        if (literal.length() > 1 && literal.charAt(0) == '0') {
+            char prefix = Character.toLowerCase(literal.charAt(1));
+            if (prefix == 'b') {
+                return 2;
+            } else if (prefix == 'o') {
+                return 8;
+            } else if (prefix == 'x') {
+                return 16;
+            }
+        }
+        return 10;
+    }
+
+    private static String digits(CharSequence literal, int start, int end) {
+        StringBuilder digits = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            if (literal.charAt(i) != '_') {
+                digits.append(literal.charAt(i));
+            }
+        }
+        return digits.toString();
+    }
+}
@@ -0,0 +1,37 @@
+package cyb.lexer;
+
+import lombok.Getter;
+
+import java.math.BigInteger;
+
+@Getter
+public class NumericToken extends Token {
+    private final long longValue;
+    private final BigInteger bigIntegerValue;
+    private final double doubleValue;
+
+    public NumericToken(TokenType type, String value, int line, int column, long longValue) {
+        super(type, value, line, column);
+        this.longValue = longValue;
+        this.bigIntegerValue = null;
+        this.doubleValue = longValue;
+    }
+
+    public NumericToken(TokenType type, String value, int line, int column, BigInteger bigIntegerValue) {
+        super(type, value, line, column);
+        this.longValue = bigIntegerValue.longValue();
+        this.bigIntegerValue = bigIntegerValue;
+        this.doubleValue = bigIntegerValue.doubleValue();
+    }
+
+    public NumericToken(TokenType type, String value, int line, int column, double doubleValue) {
+        super(type, value, line, column);
+        this.longValue = (long) doubleValue;
+        this.bigIntegerValue = null;
+        this.doubleValue = doubleValue;
+    }
+
+    public boolean isBigInteger() {
+        return bigIntegerValue != null;
+    }
+}
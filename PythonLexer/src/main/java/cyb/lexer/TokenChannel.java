@@ -0,0 +1,161 @@
+package cyb.lexer;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Token stream for parsers with bounded lookahead and backtracking. Tokens are pulled from the lexer on
+ * demand into a ring of reusable cursors and released as soon as they are consumed, unless a mark still
+ * refers to them; the ring only grows while marks hold on to consumed tokens. Returned cursors stay valid
+ * until the channel is read again.
+ */
+public class TokenChannel {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final Lexer lexer;
+    private TokenCursor[] ring;
+    private int mask;
+    private long start;
+    private long position;
+    private long end;
+    private boolean exhausted;
+    private long[] marks = new long[8];
+    private int markCount;
+
+    public TokenChannel(Lexer lexer) {
+        this(lexer, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the lookahead the channel supports without an active mark, rounded up to a power of two
+     */
+    public TokenChannel(Lexer lexer, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+        this.lexer = lexer;
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        ring = new TokenCursor[size];
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = new TokenCursor();
+        }
+        mask = ring.length - 1;
+    }
+
+    /**
+     * @return the token {@code k} positions ahead (0 is the next token), or null after the end of input
+     */
+    public TokenCursor peek(int k) throws IOException {
+        if (k < 0) {
+            throw new IllegalArgumentException("Lookahead must not be negative.");
+        }
+        while (position + k >= end) {
+            if (!pull()) {
+                return null;
+            }
+        }
+        return ring[(int) ((position + k) & mask)];
+    }
+
+    public TokenType peekType(int k) throws IOException {
+        TokenCursor token = peek(k);
+        return token == null ? null : token.getType();
+    }
+
+    /**
+     * Consumes the next token.
+     *
+     * @return the consumed token, or null at the end of input
+     */
+    public TokenCursor next() throws IOException {
+        TokenCursor token = peek(0);
+        if (token != null) {
+            position++;
+            if (markCount == 0) {
+                start = position;
+            }
+        }
+        return token;
+    }
+
+    /**
+     * Remembers the current position; tokens consumed from now on are kept until the mark is released.
+     */
+    public long mark() {
+        if (markCount == marks.length) {
+            marks = Arrays.copyOf(marks, markCount * 2);
+        }
+        marks[markCount++] = position;
+        return position;
+    }
+
+    /**
+     * Moves back (or forward again) to a mark that has not been released yet.
+     */
+    public void rewind(long mark) {
+        findMark(mark);
+        position = mark;
+    }
+
+    /**
+     * Drops a mark; the tokens it kept are released once no older mark refers to them. A position marked
+     * several times has to be released as many times.
+     */
+    public void release(long mark) {
+        marks[findMark(mark)] = marks[--markCount];
+        long retained = position;
+        for (int i = 0; i < markCount; i++) {
+            retained = Math.min(retained, marks[i]);
+        }
+        start = retained;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    private int findMark(long mark) {
+        for (int i = markCount - 1; i >= 0; i--) {
+            if (marks[i] == mark) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Mark " + mark + " was never taken or has already been released.");
+    }
+
+    private boolean pull() throws IOException {
+        if (exhausted) {
+            return false;
+        }
+        if (end - start == ring.length) {
+            if (markCount == 0) {
+                throw new IllegalStateException("Lookahead exceeds the channel capacity of " + ring.length + ".");
+            }
+            grow();
+        }
+        if (!lexer.next(ring[(int) (end & mask)])) {
+            exhausted = true;
+            return false;
+        }
+        end++;
+        return true;
+    }
+
+    private void grow() {
+        TokenCursor[] grown = new TokenCursor[ring.length * 2];
+        int grownMask = grown.length - 1;
+        for (long i = start; i < end; i++) {
+            grown[(int) (i & grownMask)] = ring[(int) (i & mask)];
+        }
+        for (int i = 0; i < grown.length; i++) {
+            if (grown[i] == null) {
+                grown[i] = new TokenCursor();
+            }
+        }
+        ring = grown;
+        mask = grownMask;
+    }
+}
@@ -0,0 +1,90 @@
+package cyb.lexer;
+
+import lombok.Getter;
+
+import java.math.BigInteger;
+
+/**
+ * Mutable token filled by {@link Lexer#next(TokenCursor)}. The value is only valid until the cursor is
+ * passed to the lexer again; use {@link #toToken()} to keep a token.
+ */
+@Getter
+public class TokenCursor {
+    private TokenType type;
+    private final StringBuilder value = new StringBuilder();
+    private int line;
+    private int column;
+    private boolean numeric;
+    private long longValue;
+    private BigInteger bigIntegerValue;
+    private double doubleValue;
+
+    void set(TokenType type, CharSequence value, int line, int column) {
+        this.type = type;
+        this.value.setLength(0);
+        this.value.append(value);
+        this.line = line;
+        this.column = column;
+        this.numeric = false;
+        this.bigIntegerValue = null;
+    }
+
+    void setIntegerValue(long longValue) {
+        this.numeric = true;
+        this.longValue = longValue;
+        this.doubleValue = longValue;
+    }
+
+    void setIntegerValue(BigInteger bigIntegerValue) {
+        this.numeric = true;
+        this.longValue = bigIntegerValue.longValue();
+        this.bigIntegerValue = bigIntegerValue;
+        this.doubleValue = bigIntegerValue.doubleValue();
+    }
+
+    void setFloatValue(double doubleValue) {
+        this.numeric = true;
+        this.longValue = (long) doubleValue;
+        this.doubleValue = doubleValue;
+    }
+
+    void copyFrom(TokenCursor other) {
+        set(other.type, other.value, other.line, other.column);
+        numeric = other.numeric;
+        longValue = other.longValue;
+        bigIntegerValue = other.bigIntegerValue;
+        doubleValue = other.doubleValue;
+    }
+
+    public CharSequence getValue() {
+        return value;
+    }
+
+    public boolean isBigInteger() {
+        return bigIntegerValue != null;
+    }
+
+    public boolean valueEquals(CharSequence text) {
+        if (value.length() != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (value.charAt(i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Token toToken() {
+        String text = value.toString();
+        if (!numeric) {
+            return new Token(type, text, line, column);
+        } else if (bigIntegerValue != null) {
+            return new NumericToken(type, text, line, column, bigIntegerValue);
+        } else if (type == TokenType.INTEGER_LITERAL) {
+            return new NumericToken(type, text, line, column, longValue);
+        }
+        return new NumericToken(type, text, line, column, doubleValue);
+    }
+}
@@ -96,6 +96,8 @@ public enum TokenType {
     IMAGINARY_LITERAL(""),
 
     STRING_LITERAL(""),
+    BYTES_LITERAL(""),
+    FORMATTED_STRING_LITERAL(""),
 
     // LINE STRUCTURE
     NEWLINE(""),
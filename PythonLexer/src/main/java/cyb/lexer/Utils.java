@@ -23,9 +23,28 @@ public abstract class Utils {
         return false;
     }
 
-    public static Character escapeChar(char ch) {
+    public static boolean isStringPrefixStart(char ch) {
+        char lower = Character.toLowerCase(ch);
+        return lower == 'r' || lower == 'u' || lower == 'b' || lower == 'f';
+    }
+
+    public static boolean isStringPrefix(CharSequence prefix) {
+        if (prefix.length() == 1) {
+            return isStringPrefixStart(prefix.charAt(0));
+        } else if (prefix.length() == 2) {
+            char first = Character.toLowerCase(prefix.charAt(0));
+            char second = Character.toLowerCase(prefix.charAt(1));
+            return (first == 'r' && (second == 'b' || second == 'f'))
+                    || (second == 'r' && (first == 'b' || first == 'f'));
+        }
+        return false;
+    }
+
+    public static int escapeChar(char ch) {
         if (ch == '\\' || ch == '\'' || ch == '\"') {
             return ch;
+        } else if (ch == 'a') {
+            return '\u0007';
         } else if (ch == 'b') {
             return '\b';
         } else if (ch == 'f') {
@@ -36,8 +55,10 @@ public abstract class Utils {
             return '\r';
         } else if (ch == 't') {
             return '\t';
+        } else if (ch == 'v') {
+            return '\u000B';
         } else {
-            return null;
+            return -1;
         }
     }
 }
@@ -0,0 +1,162 @@
+package cyb.lexer.batch;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Lexes the {@code .py} entries of zip, wheel, tar and gzipped tar archives without extracting them. The
+ * calling thread decompresses the archive sequentially and hands every entry to the workers through a
+ * bounded queue, so decompression and lexing overlap while at most a few entries are held in memory.
+ * With a single thread entries are visited straight from the decompressing stream.
+ */
+public abstract class ArchiveLexing {
+    private static final int QUEUED_ENTRIES_PER_WORKER = 2;
+    private static final Entry END = new Entry(null, null);
+
+    public static boolean isArchive(Path path) {
+        String name = path.getFileName().toString().toLowerCase();
+        return name.endsWith(".zip") || name.endsWith(".whl") || name.endsWith(".tar") || name.endsWith(".tar.gz")
+                || name.endsWith(".tgz");
+    }
+
+    /**
+     * Visits every source entry of the given archives. The returned list holds one accumulator per worker,
+     * as with {@link ParallelLexing#process}; entry names are the archive path and the entry path joined by '!'.
+     */
+    public static <A> List<A> process(List<Path> archives, int threads, Supplier<A> accumulatorFactory,
+                                      SourceVisitor<A> visitor) throws IOException {
+        int workers = Math.max(1, threads);
+        List<A> accumulators = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            accumulators.add(accumulatorFactory.get());
+        }
+
+        if (workers == 1) {
+            for (Path archive : archives) {
+                readArchive(archive, (name, in) ->
+                        visitor.visit(accumulators.get(0), name, in));
+            }
+            return accumulators;
+        }
+
+        BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(workers * QUEUED_ENTRIES_PER_WORKER);
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<?>> futures = new ArrayList<>(workers);
+            for (A accumulator : accumulators) {
+                futures.add(executor.submit(() -> {
+                    Entry entry;
+                    while ((entry = queue.take()) != END) {
+                        visitor.visit(accumulator, entry.name, new ByteArrayInputStream(entry.content));
+                    }
+                    return null;
+                }));
+            }
+
+            for (Path archive : archives) {
+                readArchive(archive, (name, in) -> enqueue(queue, new Entry(name, in.readAllBytes()), futures));
+            }
+            for (int i = 0; i < workers; i++) {
+                enqueue(queue, END, futures);
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while lexing archives.", e);
+        } catch (ExecutionException e) {
+            throw WorkerFailure.asIOException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return accumulators;
+    }
+
+    // A worker that failed no longer takes entries, so the queue is only waited on while all workers run.
+    private static void enqueue(BlockingQueue<Entry> queue, Entry entry, List<Future<?>> futures)
+            throws IOException {
+        try {
+            while (!queue.offer(entry, 100, TimeUnit.MILLISECONDS)) {
+                for (Future<?> future : futures) {
+                    if (future.isDone()) {
+                        future.get();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while lexing archives.", e);
+        } catch (ExecutionException e) {
+            throw WorkerFailure.asIOException(e);
+        }
+    }
+
+    private static void readArchive(Path archive, EntryConsumer consumer) throws IOException {
+        String name = archive.getFileName().toString().toLowerCase();
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(archive))) {
+            if (name.endsWith(".zip") || name.endsWith(".whl")) {
+                ZipInputStream zip = new ZipInputStream(file);
+                ZipEntry entry;
+                while ((entry = zip.getNextEntry()) != null) {
+                    if (!entry.isDirectory() && ParallelLexing.isSource(entry.getName())) {
+                        consumer.accept(archive + "!" + entry.getName(), new EntryInputStream(zip));
+                    }
+                }
+            } else {
+                InputStream in = name.endsWith(".tar") ? file : new GZIPInputStream(file, 64 * 1024);
+                TarInputStream tar = new TarInputStream(in);
+                String entry;
+                while ((entry = tar.getNextEntry()) != null) {
+                    if (ParallelLexing.isSource(entry)) {
+                        consumer.accept(archive + "!" + entry, new EntryInputStream(tar));
+                    }
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface EntryConsumer {
+        void accept(String name, InputStream in) throws IOException;
+    }
+
+    private static class Entry {
+        private final String name;
+        private final byte[] content;
+
+        Entry(String name, byte[] content) {
+            this.name = name;
+            this.content = content;
+        }
+    }
+
+    // Keeps visitors from closing the archive stream along with an entry.
+    private static class EntryInputStream extends FilterInputStream {
+        EntryInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
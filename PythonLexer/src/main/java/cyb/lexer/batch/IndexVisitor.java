@@ -0,0 +1,8 @@
+package cyb.lexer.batch;
+
+import java.io.IOException;
+
+@FunctionalInterface
+public interface IndexVisitor<A> {
+    void visit(A accumulator, int index) throws IOException;
+}
@@ -0,0 +1,133 @@
+package cyb.lexer.batch;
+
+import cyb.lexer.Lexer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+public abstract class ParallelLexing {
+    private static final String SOURCE_EXTENSION = ".py";
+
+    public static boolean isSource(String name) {
+        return name.endsWith(SOURCE_EXTENSION);
+    }
+
+    public static List<Path> findSources(Path root) throws IOException {
+        return findSources(root, directory -> {
+        });
+    }
+
+    /**
+     * Walks the tree without following links and returns its sources in sorted order; every directory on
+     * the way, the root included, is handed to {@code directoryVisitor}.
+     */
+    public static List<Path> findSources(Path root, PathVisitor directoryVisitor) throws IOException {
+        List<Path> sources = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    directoryVisitor.visit(path);
+                } else if (isSource(path.getFileName().toString()) && Files.isRegularFile(path)) {
+                    sources.add(path);
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Collections.sort(sources);
+        return sources;
+    }
+
+    public static int defaultThreads() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Creates a lexer without input, to be {@link Lexer#reset reset} to one file after another so that its
+     * buffers and settings are kept from file to file.
+     */
+    public static Lexer reusableLexer() {
+        return new Lexer(InputStream.nullInputStream());
+    }
+
+    /**
+     * Visits every file on a fixed number of workers. Each worker owns one accumulator and claims the next
+     * unprocessed file through a shared counter, so workers never contend on anything but that counter.
+     * The returned list holds one accumulator per worker and is meant to be merged by the caller.
+     */
+    public static <A> List<A> process(List<Path> files, int threads, Supplier<A> accumulatorFactory,
+                                      SourceVisitor<A> visitor) throws IOException {
+        int workers = Math.max(1, Math.min(threads, files.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            return process(executor, workers, files.size(), accumulatorFactory,
+                    (accumulator, index) -> visitFile(accumulator, files.get(index), visitor));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Visits the indexes {@code 0} to {@code count - 1} with at most {@code workers} tasks on the given
+     * executor, the same way as {@link #process(List, int, Supplier, SourceVisitor)} visits files, and waits
+     * for all of them.
+     */
+    public static <A> List<A> process(ExecutorService executor, int workers, int count,
+                                      Supplier<A> accumulatorFactory, IndexVisitor<A> visitor) throws IOException {
+        int tasks = Math.max(1, Math.min(workers, count));
+        List<A> accumulators = new ArrayList<>(tasks);
+        for (int i = 0; i < tasks; i++) {
+            accumulators.add(accumulatorFactory.get());
+        }
+        if (count == 0) {
+            return accumulators;
+        }
+
+        AtomicInteger next = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>(tasks);
+        try {
+            for (A accumulator : accumulators) {
+                futures.add(executor.submit(() -> {
+                    int index;
+                    while ((index = next.getAndIncrement()) < count) {
+                        visitor.visit(accumulator, index);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while lexing sources.", e);
+        } catch (ExecutionException e) {
+            throw WorkerFailure.asIOException(e);
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return accumulators;
+    }
+
+    private static <A> void visitFile(A accumulator, Path file, SourceVisitor<A> visitor) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            visitor.visit(accumulator, file.toString(), in);
+        }
+    }
+}
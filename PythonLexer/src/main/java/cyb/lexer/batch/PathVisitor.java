@@ -0,0 +1,9 @@
+package cyb.lexer.batch;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@FunctionalInterface
+public interface PathVisitor {
+    void visit(Path path) throws IOException;
+}
@@ -0,0 +1,9 @@
+package cyb.lexer.batch;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@FunctionalInterface
+public interface SourceVisitor<A> {
+    void visit(A accumulator, String name, InputStream in) throws IOException;
+}
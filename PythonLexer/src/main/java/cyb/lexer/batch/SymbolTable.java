@@ -0,0 +1,111 @@
+package cyb.lexer.batch;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressed (linear probing) table that assigns dense ids, in insertion order, to distinct
+ * (kind, text) keys. The kind lets one table hold e.g. values of different token types. Looking up a known
+ * key does not allocate; the text is only materialized as a string when the key is inserted.
+ */
+public class SymbolTable {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int[] table = new int[INITIAL_CAPACITY];
+    private int[] kinds = new int[INITIAL_CAPACITY / 2];
+    private String[] texts = new String[INITIAL_CAPACITY / 2];
+    private int[] hashes = new int[INITIAL_CAPACITY / 2];
+    private int size;
+
+    public SymbolTable() {
+        Arrays.fill(table, -1);
+    }
+
+    /**
+     * @return the id of the key, or -1 if it has not been interned
+     */
+    public int find(int kind, CharSequence text) {
+        int hash = hash(kind, text);
+        int mask = table.length - 1;
+
+        for (int slot = hash & mask; table[slot] >= 0; slot = (slot + 1) & mask) {
+            int id = table[slot];
+            if (hashes[id] == hash && kinds[id] == kind && texts[id].contentEquals(text)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the id of the key, which is {@link #size()} before the call if the key is new
+     */
+    public int intern(int kind, CharSequence text) {
+        int hash = hash(kind, text);
+        int mask = table.length - 1;
+        int slot = hash & mask;
+
+        for (; table[slot] >= 0; slot = (slot + 1) & mask) {
+            int id = table[slot];
+            if (hashes[id] == hash && kinds[id] == kind && texts[id].contentEquals(text)) {
+                return id;
+            }
+        }
+
+        if (size == texts.length) {
+            kinds = Arrays.copyOf(kinds, size * 2);
+            texts = Arrays.copyOf(texts, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        int id = size++;
+        kinds[id] = kind;
+        texts[id] = text.toString();
+        hashes[id] = hash;
+        table[slot] = id;
+        if (size * 2 > table.length) {
+            table = new int[table.length * 2];
+            Arrays.fill(table, -1);
+            for (int i = 0; i < size; i++) {
+                insert(i);
+            }
+        }
+        return id;
+    }
+
+    public int getKind(int id) {
+        return kinds[id];
+    }
+
+    public String getText(int id) {
+        return texts[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all keys but keeps the allocated capacity.
+     */
+    public void clear() {
+        Arrays.fill(table, -1);
+        Arrays.fill(texts, 0, size, null);
+        size = 0;
+    }
+
+    private void insert(int id) {
+        int mask = table.length - 1;
+        int slot = hashes[id] & mask;
+        while (table[slot] >= 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = id;
+    }
+
+    private static int hash(int kind, CharSequence text) {
+        int hash = kind;
+        for (int i = 0; i < text.length(); i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,187 @@
+package cyb.lexer.batch;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the regular files of a tar archive one after another, like {@link java.util.zip.ZipInputStream}:
+ * {@link #getNextEntry()} moves to the next file and the read methods then return its content. Handles
+ * ustar name prefixes, GNU long names and the path record of pax headers; other entry types are skipped.
+ */
+public class TarInputStream extends InputStream {
+    private static final int BLOCK_SIZE = 512;
+
+    private final InputStream in;
+    private final byte[] header = new byte[BLOCK_SIZE];
+    private long remaining;
+    private long padding;
+
+    public TarInputStream(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * @return the path of the next regular file, or null at the end of the archive
+     */
+    public String getNextEntry() throws IOException {
+        String longName = null;
+        while (true) {
+            skipFully(remaining + padding);
+            remaining = 0;
+            padding = 0;
+            if (!readHeader()) {
+                return null;
+            }
+
+            long size = parseSize();
+            remaining = size;
+            padding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+            char type = (char) header[156];
+
+            if (type == 'L') {
+                longName = trimName(new String(readContent(size), StandardCharsets.UTF_8));
+            } else if (type == 'x') {
+                String path = parsePaxPath(readContent(size));
+                if (path != null) {
+                    longName = path;
+                }
+            } else if (type == '0' || type == '\0' || type == '7') {
+                return longName != null ? longName : parseName();
+            } else {
+                longName = null;
+            }
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (remaining == 0) {
+            return -1;
+        }
+        int c = in.read();
+        if (c < 0) {
+            throw new EOFException("Truncated tar entry.");
+        }
+        remaining--;
+        return c;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (remaining == 0) {
+            return -1;
+        }
+        int count = in.read(buffer, offset, (int) Math.min(length, remaining));
+        if (count < 0) {
+            throw new EOFException("Truncated tar entry.");
+        }
+        remaining -= count;
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private boolean readHeader() throws IOException {
+        int count = in.readNBytes(header, 0, BLOCK_SIZE);
+        if (count == 0) {
+            return false;
+        } else if (count < BLOCK_SIZE) {
+            throw new EOFException("Truncated tar header.");
+        }
+        for (byte b : header) {
+            if (b != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long parseSize() throws IOException {
+        // sizes of 8 GB and more are stored in base-256 with the high bit of the first byte set
+        if ((header[124] & 0x80) != 0) {
+            long size = header[124] & 0x7F;
+            for (int i = 125; i < 136; i++) {
+                size = (size << 8) | (header[i] & 0xFF);
+            }
+            return size;
+        }
+        long size = 0;
+        for (int i = 124; i < 136 && header[i] != 0 && header[i] != ' '; i++) {
+            if (header[i] < '0' || header[i] > '7') {
+                throw new IOException("Malformed tar entry size.");
+            }
+            size = size * 8 + (header[i] - '0');
+        }
+        return size;
+    }
+
+    private String parseName() {
+        String name = trimName(new String(header, 0, 100, StandardCharsets.UTF_8));
+        boolean ustar = header[257] == 'u' && header[258] == 's' && header[259] == 't' && header[260] == 'a'
+                && header[261] == 'r';
+        if (ustar && header[345] != 0) {
+            return trimName(new String(header, 345, 155, StandardCharsets.UTF_8)) + "/" + name;
+        }
+        return name;
+    }
+
+    private byte[] readContent(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Tar header entry is too large.");
+        }
+        byte[] content = in.readNBytes((int) size);
+        if (content.length < size) {
+            throw new EOFException("Truncated tar entry.");
+        }
+        remaining = 0;
+        return content;
+    }
+
+    // Pax records look like "<length> <key>=<value>\n", the length counting the bytes of the whole record.
+    private static String parsePaxPath(byte[] records) throws IOException {
+        int position = 0;
+        while (position < records.length) {
+            int length = 0;
+            int i = position;
+            for (; i < records.length && records[i] != ' '; i++) {
+                if (records[i] < '0' || records[i] > '9') {
+                    throw new IOException("Malformed pax header.");
+                }
+                length = length * 10 + (records[i] - '0');
+            }
+            int end = position + length - 1;
+            if (i >= end || end > records.length) {
+                throw new IOException("Malformed pax header.");
+            }
+            String record = new String(records, i + 1, end - i - 1, StandardCharsets.UTF_8);
+            if (record.startsWith("path=")) {
+                return record.substring(5);
+            }
+            position += length;
+        }
+        return null;
+    }
+
+    private static String trimName(String name) {
+        int end = name.indexOf('\0');
+        return end < 0 ? name : name.substring(0, end);
+    }
+
+    private void skipFully(long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("Truncated tar entry.");
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package cyb.lexer.batch;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ExecutionException;
+
+public abstract class WorkerFailure {
+
+    /**
+     * Unwraps the failure of a worker task for its caller to throw. I/O failures are returned, also when a
+     * worker had to wrap them in an {@link UncheckedIOException}; any other checked cause is wrapped.
+     *
+     * @throws RuntimeException the cause itself when it is unchecked
+     * @throws Error            the cause itself when it is an error
+     */
+    public static IOException asIOException(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        } else if (cause instanceof UncheckedIOException) {
+            return ((UncheckedIOException) cause).getCause();
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IOException(cause);
+    }
+}
@@ -0,0 +1,121 @@
+package cyb.lexer.clone;
+
+import cyb.lexer.Lexer;
+import cyb.lexer.batch.ParallelLexing;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class CloneFingerprints {
+    public static final int DEFAULT_K = 25;
+    public static final int DEFAULT_WINDOW = 20;
+
+    public static List<Fingerprints> fingerprint(List<Path> files, int k, int window, int threads)
+            throws IOException {
+        List<Fingerprints> result = new ArrayList<>(files.size());
+        fingerprint(files, k, window, threads, result::add);
+        return result;
+    }
+
+    /**
+     * Fingerprints the files on a fixed number of workers and hands the results to {@code consumer} in the
+     * order of {@code files}, one at a time. A result is only held until the files before it are done, so
+     * memory is bounded by how far the workers drift apart rather than by the number of files.
+     */
+    public static void fingerprint(List<Path> files, int k, int window, int threads, FingerprintsConsumer consumer)
+            throws IOException {
+        int workers = Math.max(1, Math.min(threads, files.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        OrderedResults results = new OrderedResults(files.size(), consumer);
+        try {
+            ParallelLexing.process(executor, workers, files.size(), () -> new Worker(k, window),
+                    (worker, index) -> results.complete(index, worker.fingerprint(files.get(index))));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public static void write(List<Fingerprints> fingerprints, Writer out) throws IOException {
+        for (Fingerprints file : fingerprints) {
+            write(file, out);
+        }
+        out.flush();
+    }
+
+    private static void write(Fingerprints file, Writer out) throws IOException {
+        for (int i = 0; i < file.size(); i++) {
+            out.write(Long.toHexString(file.getHashes()[i]));
+            out.write('\t');
+            out.write(file.getName());
+            out.write('\t');
+            out.write(Integer.toString(file.getLines()[i] + 1));
+            out.write('\n');
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: CloneFingerprints <root> [k] [window] [threads]");
+            System.exit(2);
+        }
+        try {
+            int k = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_K;
+            int window = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_WINDOW;
+            int threads = args.length > 3 ? Integer.parseInt(args[3]) : ParallelLexing.defaultThreads();
+            List<Path> files = ParallelLexing.findSources(Paths.get(args[0]));
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            fingerprint(files, k, window, threads, fingerprints -> write(fingerprints, out));
+            out.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static class Worker {
+        private final Fingerprinter fingerprinter;
+        private final Lexer lexer = ParallelLexing.reusableLexer();
+
+        Worker(int k, int window) {
+            fingerprinter = new Fingerprinter(k, window);
+        }
+
+        Fingerprints fingerprint(Path file) throws IOException {
+            try (InputStream in = Files.newInputStream(file)) {
+                lexer.reset(in);
+                return fingerprinter.fingerprint(file.toString(), lexer);
+            }
+        }
+    }
+
+    // Whichever worker completes the next file in order passes it and the ones queued behind it on, so the
+    // consumer is called by one thread at a time.
+    private static class OrderedResults {
+        private final Fingerprints[] completed;
+        private final FingerprintsConsumer consumer;
+        private int next;
+
+        OrderedResults(int count, FingerprintsConsumer consumer) {
+            completed = new Fingerprints[count];
+            this.consumer = consumer;
+        }
+
+        synchronized void complete(int index, Fingerprints fingerprints) throws IOException {
+            completed[index] = fingerprints;
+            while (next < completed.length && completed[next] != null) {
+                consumer.accept(completed[next]);
+                completed[next++] = null;
+            }
+        }
+    }
+}
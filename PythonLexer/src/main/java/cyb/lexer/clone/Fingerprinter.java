@@ -0,0 +1,120 @@
+package cyb.lexer.clone;
+
+import cyb.lexer.Lexer;
+import cyb.lexer.TokenCursor;
+import cyb.lexer.TokenType;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Computes winnowed k-gram fingerprints of a token stream. Every token is normalized to its type, so
+ * renamed identifiers and changed literals still match; line structure tokens are ignored. Hashes are
+ * rolled over a ring of the last k normalized tokens and the winnowing window is kept as a monotonic
+ * queue, so no k-gram or window is ever materialized. Instances reuse their arrays and are not thread-safe.
+ */
+public class Fingerprinter {
+    private static final long BASE = 0x100000001B3L;
+    private static final long MIX = 0x9E3779B97F4A7C15L;
+
+    private final int k;
+    private final int window;
+    private final long highestPower;
+
+    private final long[] gramTokens;
+    private final int[] gramLines;
+    private final long[] queueHashes;
+    private final int[] queueLines;
+    private final long[] queuePositions;
+    private long[] selectedHashes = new long[256];
+    private int[] selectedLines = new int[256];
+    private final TokenCursor cursor = new TokenCursor();
+
+    public Fingerprinter(int k, int window) {
+        if (k < 1 || window < 1) {
+            throw new IllegalArgumentException("k-gram size and window must be positive.");
+        }
+        this.k = k;
+        this.window = window;
+
+        long power = 1;
+        for (int i = 1; i < k; i++) {
+            power *= BASE;
+        }
+        highestPower = power;
+
+        gramTokens = new long[k];
+        gramLines = new int[k];
+        queueHashes = new long[window];
+        queueLines = new int[window];
+        queuePositions = new long[window];
+    }
+
+    public Fingerprints fingerprint(String name, Lexer lexer) throws IOException {
+        long hash = 0;
+        long tokens = 0;
+        long grams = 0;
+        int queueStart = 0;
+        int queueSize = 0;
+        long lastSelected = -1;
+        int selected = 0;
+
+        while (lexer.next(cursor)) {
+            TokenType type = cursor.getType();
+            if (type == TokenType.NEWLINE || type == TokenType.INDENT || type == TokenType.DEDENT
+                    || type == TokenType.ERROR) {
+                continue;
+            }
+
+            long symbol = (type.ordinal() + 1) * MIX;
+            int slot = (int) (tokens % k);
+            if (tokens >= k) {
+                hash -= gramTokens[slot] * highestPower;
+            }
+            hash = hash * BASE + symbol;
+            gramTokens[slot] = symbol;
+            gramLines[slot] = cursor.getLine();
+            tokens++;
+            if (tokens < k) {
+                continue;
+            }
+
+            // the k-gram that has just been completed starts at the oldest slot of the ring
+            long position = grams++;
+            int line = gramLines[(int) (tokens % k)];
+
+            if (queueSize > 0 && queuePositions[queueStart] <= position - window) {
+                queueStart = (queueStart + 1) % window;
+                queueSize--;
+            }
+            while (queueSize > 0 && queueHashes[(queueStart + queueSize - 1) % window] >= hash) {
+                queueSize--;
+            }
+            int tail = (queueStart + queueSize++) % window;
+            queueHashes[tail] = hash;
+            queueLines[tail] = line;
+            queuePositions[tail] = position;
+
+            if (grams >= window && queuePositions[queueStart] != lastSelected) {
+                lastSelected = queuePositions[queueStart];
+                selected = select(selected, queueHashes[queueStart], queueLines[queueStart]);
+            }
+        }
+
+        // a file shorter than one window still contributes the minimum of its k-grams
+        if (grams > 0 && grams < window) {
+            selected = select(selected, queueHashes[queueStart], queueLines[queueStart]);
+        }
+        return new Fingerprints(name, selectedHashes, selectedLines, selected);
+    }
+
+    private int select(int selected, long hash, int line) {
+        if (selected == selectedHashes.length) {
+            selectedHashes = Arrays.copyOf(selectedHashes, selected * 2);
+            selectedLines = Arrays.copyOf(selectedLines, selected * 2);
+        }
+        selectedHashes[selected] = hash;
+        selectedLines[selected] = line;
+        return selected + 1;
+    }
+}
@@ -0,0 +1,26 @@
+package cyb.lexer.clone;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * Winnowed fingerprints of one file: the selected k-gram hashes together with the source line of the
+ * first token of each k-gram, in file order.
+ */
+@Getter
+public class Fingerprints {
+    private final String name;
+    private final long[] hashes;
+    private final int[] lines;
+
+    Fingerprints(String name, long[] hashes, int[] lines, int size) {
+        this.name = name;
+        this.hashes = Arrays.copyOf(hashes, size);
+        this.lines = Arrays.copyOf(lines, size);
+    }
+
+    public int size() {
+        return hashes.length;
+    }
+}
@@ -0,0 +1,8 @@
+package cyb.lexer.clone;
+
+import java.io.IOException;
+
+@FunctionalInterface
+public interface FingerprintsConsumer {
+    void accept(Fingerprints fingerprints) throws IOException;
+}
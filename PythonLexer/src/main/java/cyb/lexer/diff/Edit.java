@@ -0,0 +1,30 @@
+package cyb.lexer.diff;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * One hunk of a token diff: tokens [oldStart, oldEnd) of the old version are replaced by tokens
+ * [newStart, newEnd) of the new version. Either range may be empty. Positions are those of the first
+ * token of each range, or of the token the range is inserted before.
+ */
+@Getter
+@AllArgsConstructor
+public class Edit {
+    private final int oldStart;
+    private final int oldEnd;
+    private final int newStart;
+    private final int newEnd;
+    private final int oldLine;
+    private final int oldColumn;
+    private final int newLine;
+    private final int newColumn;
+
+    public boolean isInsertion() {
+        return oldStart == oldEnd;
+    }
+
+    public boolean isDeletion() {
+        return newStart == newEnd;
+    }
+}
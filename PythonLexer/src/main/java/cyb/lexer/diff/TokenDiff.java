@@ -0,0 +1,219 @@
+package cyb.lexer.diff;
+
+import cyb.lexer.Lexer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Token-level diff of two versions of a file. Both versions are lexed into arrays of interned token ids
+ * and compared with Myers' linear-space algorithm (divide and conquer on the middle snake), so the
+ * comparison itself only touches int arrays and needs O(N + M) memory.
+ */
+public class TokenDiff {
+    private final TokenInterner interner = new TokenInterner();
+    private TokenSequence oldTokens;
+    private TokenSequence newTokens;
+    private List<Edit> edits;
+
+    public static TokenDiff compare(InputStream oldVersion, InputStream newVersion) throws IOException {
+        TokenDiff diff = new TokenDiff();
+        diff.oldTokens = TokenSequence.of(new Lexer(oldVersion), diff.interner);
+        diff.newTokens = TokenSequence.of(new Lexer(newVersion), diff.interner);
+        diff.edits = diff.computeEdits();
+        return diff;
+    }
+
+    public List<Edit> getEdits() {
+        return edits;
+    }
+
+    public TokenSequence getOldTokens() {
+        return oldTokens;
+    }
+
+    public TokenSequence getNewTokens() {
+        return newTokens;
+    }
+
+    public TokenInterner getInterner() {
+        return interner;
+    }
+
+    private List<Edit> computeEdits() {
+        int n = oldTokens.size();
+        int m = newTokens.size();
+        boolean[] deleted = new boolean[n];
+        boolean[] inserted = new boolean[m];
+        new Myers(oldTokens.ids(), newTokens.ids(), deleted, inserted).diff(0, n, 0, m);
+
+        List<Edit> result = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < n || j < m) {
+            if (i < n && j < m && !deleted[i] && !inserted[j]) {
+                i++;
+                j++;
+                continue;
+            }
+            int oldStart = i;
+            int newStart = j;
+            while (i < n && deleted[i]) {
+                i++;
+            }
+            while (j < m && inserted[j]) {
+                j++;
+            }
+            result.add(new Edit(oldStart, i, newStart, j,
+                    lineAt(oldTokens, oldStart), columnAt(oldTokens, oldStart),
+                    lineAt(newTokens, newStart), columnAt(newTokens, newStart)));
+        }
+        return result;
+    }
+
+    // An empty range at the end of a file is reported just past its last token.
+    private static int lineAt(TokenSequence tokens, int index) {
+        if (index < tokens.size()) {
+            return tokens.getLine(index);
+        }
+        return tokens.size() == 0 ? 0 : tokens.getLine(tokens.size() - 1);
+    }
+
+    private static int columnAt(TokenSequence tokens, int index) {
+        if (index < tokens.size()) {
+            return tokens.getColumn(index);
+        }
+        return tokens.size() == 0 ? 0 : tokens.getColumn(tokens.size() - 1) + 1;
+    }
+
+    private static class Myers {
+        private final int[] a;
+        private final int[] b;
+        private final boolean[] deleted;
+        private final boolean[] inserted;
+        private final int[] forward;
+        private final int[] backward;
+        private final int offset;
+
+        Myers(int[] a, int[] b, boolean[] deleted, boolean[] inserted) {
+            this.a = a;
+            this.b = b;
+            this.deleted = deleted;
+            this.inserted = inserted;
+            offset = (deleted.length + inserted.length + 1) / 2 + 1;
+            forward = new int[2 * offset + 1];
+            backward = new int[2 * offset + 1];
+        }
+
+        void diff(int aStart, int aEnd, int bStart, int bEnd) {
+            while (aStart < aEnd && bStart < bEnd && a[aStart] == b[bStart]) {
+                aStart++;
+                bStart++;
+            }
+            while (aStart < aEnd && bStart < bEnd && a[aEnd - 1] == b[bEnd - 1]) {
+                aEnd--;
+                bEnd--;
+            }
+
+            if (aStart == aEnd) {
+                for (int j = bStart; j < bEnd; j++) {
+                    inserted[j] = true;
+                }
+            } else if (bStart == bEnd) {
+                for (int i = aStart; i < aEnd; i++) {
+                    deleted[i] = true;
+                }
+            } else {
+                // snake = {x start, y start, x end, y end}, relative to aStart and bStart
+                int[] snake = middleSnake(aStart, aEnd, bStart, bEnd);
+                diff(aStart, aStart + snake[0], bStart, bStart + snake[1]);
+                diff(aStart + snake[2], aEnd, bStart + snake[3], bEnd);
+            }
+        }
+
+        private int[] middleSnake(int aStart, int aEnd, int bStart, int bEnd) {
+            int n = aEnd - aStart;
+            int m = bEnd - bStart;
+            int delta = n - m;
+            boolean odd = (delta & 1) != 0;
+            int max = (n + m + 1) / 2;
+
+            forward[offset + 1] = 0;
+            backward[offset + 1] = 0;
+            for (int d = 0; d <= max; d++) {
+                for (int k = -d; k <= d; k += 2) {
+                    int x = k == -d || (k != d && forward[offset + k - 1] < forward[offset + k + 1])
+                            ? forward[offset + k + 1] : forward[offset + k - 1] + 1;
+                    int y = x - k;
+                    int xStart = x;
+                    int yStart = y;
+                    while (x < n && y < m && a[aStart + x] == b[bStart + y]) {
+                        x++;
+                        y++;
+                    }
+                    forward[offset + k] = x;
+
+                    int reverse = delta - k;
+                    if (odd && reverse >= -(d - 1) && reverse <= d - 1 && x + backward[offset + reverse] >= n) {
+                        return new int[]{xStart, yStart, x, y};
+                    }
+                }
+
+                for (int k = -d; k <= d; k += 2) {
+                    int x = k == -d || (k != d && backward[offset + k - 1] < backward[offset + k + 1])
+                            ? backward[offset + k + 1] : backward[offset + k - 1] + 1;
+                    int y = x - k;
+                    int xEnd = x;
+                    int yEnd = y;
+                    while (x < n && y < m && a[aEnd - 1 - x] == b[bEnd - 1 - y]) {
+                        x++;
+                        y++;
+                    }
+                    backward[offset + k] = x;
+
+                    int straight = delta - k;
+                    if (!odd && straight >= -d && straight <= d && x + forward[offset + straight] >= n) {
+                        return new int[]{n - x, m - y, n - xEnd, m - yEnd};
+                    }
+                }
+            }
+            throw new IllegalStateException("No middle snake found.");
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: TokenDiff <old file> <new file>");
+            System.exit(2);
+        }
+        try (InputStream oldVersion = Files.newInputStream(Paths.get(args[0]));
+             InputStream newVersion = Files.newInputStream(Paths.get(args[1]))) {
+            long start = System.nanoTime();
+            TokenDiff diff = compare(oldVersion, newVersion);
+            long elapsed = System.nanoTime() - start;
+
+            for (Edit edit : diff.getEdits()) {
+                System.out.printf("@@ -%d:%d +%d:%d @@%n", edit.getOldLine() + 1, edit.getOldColumn() + 1,
+                        edit.getNewLine() + 1, edit.getNewColumn() + 1);
+                print(diff, diff.getOldTokens(), edit.getOldStart(), edit.getOldEnd(), '-');
+                print(diff, diff.getNewTokens(), edit.getNewStart(), edit.getNewEnd(), '+');
+            }
+            System.err.printf("%d edits, %d -> %d tokens in %d ms%n", diff.getEdits().size(),
+                    diff.getOldTokens().size(), diff.getNewTokens().size(), elapsed / 1_000_000);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void print(TokenDiff diff, TokenSequence tokens, int start, int end, char sign) {
+        for (int i = start; i < end; i++) {
+            int id = tokens.getId(i);
+            System.out.printf("%c %d:%d %s %s%n", sign, tokens.getLine(i) + 1, tokens.getColumn(i) + 1,
+                    diff.getInterner().getType(id), diff.getInterner().getValue(id));
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package cyb.lexer.diff;
+
+import cyb.lexer.TokenType;
+import cyb.lexer.batch.SymbolTable;
+
+/**
+ * Assigns dense int ids to distinct (type, value) pairs. Looking up an already known token does not
+ * allocate, so both versions of a file can be turned into id arrays straight from a token cursor.
+ */
+public class TokenInterner {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final SymbolTable tokens = new SymbolTable();
+
+    public int intern(TokenType type, CharSequence value) {
+        return tokens.intern(type.ordinal(), value);
+    }
+
+    public TokenType getType(int id) {
+        return TYPES[tokens.getKind(id)];
+    }
+
+    public String getValue(int id) {
+        return tokens.getText(id);
+    }
+
+    public int size() {
+        return tokens.size();
+    }
+}
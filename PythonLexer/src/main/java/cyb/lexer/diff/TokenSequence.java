@@ -0,0 +1,59 @@
+package cyb.lexer.diff;
+
+import cyb.lexer.Lexer;
+import cyb.lexer.TokenCursor;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A lexed file as parallel primitive arrays: interned token ids and the position of every token.
+ */
+public class TokenSequence {
+    private int[] ids = new int[1024];
+    private int[] lines = new int[1024];
+    private int[] columns = new int[1024];
+    private int size;
+
+    public static TokenSequence of(Lexer lexer, TokenInterner interner) throws IOException {
+        TokenSequence sequence = new TokenSequence();
+        TokenCursor cursor = new TokenCursor();
+
+        while (lexer.next(cursor)) {
+            sequence.add(interner.intern(cursor.getType(), cursor.getValue()), cursor.getLine(), cursor.getColumn());
+        }
+        return sequence;
+    }
+
+    private void add(int id, int line, int column) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            lines = Arrays.copyOf(lines, size * 2);
+            columns = Arrays.copyOf(columns, size * 2);
+        }
+        ids[size] = id;
+        lines[size] = line;
+        columns[size] = column;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getId(int index) {
+        return ids[index];
+    }
+
+    public int getLine(int index) {
+        return lines[index];
+    }
+
+    public int getColumn(int index) {
+        return columns[index];
+    }
+
+    int[] ids() {
+        return ids;
+    }
+}
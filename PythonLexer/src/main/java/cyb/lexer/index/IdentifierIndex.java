@@ -0,0 +1,228 @@
+package cyb.lexer.index;
+
+import cyb.lexer.TokenType;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Read-only view of an index file written by {@link IdentifierIndexer}. The file is memory-mapped and a
+ * lookup is a binary search over the fixed-width term table followed by decoding one postings list.
+ * <p>
+ * Layout: header (magic, version, indexed token types, file table), postings lists, term names, term
+ * table, trailer. A postings list is a sequence of file groups: varint file id delta, varint occurrence
+ * count, then per occurrence a varint line delta and a zigzag column delta (absolute column when the
+ * line changes). Term names are stored as UTF-8, as literal values may hold any char, and sorted by their
+ * bytes, compared unsigned.
+ */
+public class IdentifierIndex implements Closeable {
+    static final int MAGIC = 0x50594958;
+    static final int VERSION = 2;
+    static final int TERM_ENTRY_SIZE = 24;
+    static final int TRAILER_SIZE = 32;
+
+    private final FileChannel channel;
+    private final ByteBuffer map;
+    private final EnumSet<TokenType> types = EnumSet.noneOf(TokenType.class);
+    private final List<IndexedFile> files = new ArrayList<>();
+    private final int termCount;
+    private final int termTableOffset;
+    private final int namesOffset;
+    private final int postingsOffset;
+
+    private IdentifierIndex(FileChannel channel, MappedByteBuffer map) throws IOException {
+        this.channel = channel;
+        this.map = map;
+
+        int trailer = map.limit() - TRAILER_SIZE;
+        if (trailer < 0 || map.getInt(0) != MAGIC || map.getInt(trailer + 28) != MAGIC) {
+            throw new IOException("Not an identifier index.");
+        }
+        if (map.getInt(4) != VERSION) {
+            throw new IOException("Unsupported identifier index version " + map.getInt(4) + ".");
+        }
+        termTableOffset = (int) map.getLong(trailer);
+        namesOffset = (int) map.getLong(trailer + 8);
+        postingsOffset = (int) map.getLong(trailer + 16);
+        termCount = map.getInt(trailer + 24);
+
+        ByteBuffer header = map.duplicate();
+        header.position(8);
+        int typeCount = header.getInt();
+        for (int i = 0; i < typeCount; i++) {
+            types.add(TokenType.valueOf(readString(header)));
+        }
+        int fileCount = header.getInt();
+        for (int i = 0; i < fileCount; i++) {
+            files.add(new IndexedFile(readString(header), header.getLong(), header.getLong()));
+        }
+    }
+
+    public static IdentifierIndex open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Identifier index is larger than 2 GB.");
+            }
+            return new IdentifierIndex(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return whether the file is an index in the format this version writes
+     */
+    static boolean isReadable(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+            return in.readInt() == MAGIC && in.readInt() == VERSION;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    public EnumSet<TokenType> getTypes() {
+        return EnumSet.copyOf(types);
+    }
+
+    public List<IndexedFile> getFiles() {
+        return Collections.unmodifiableList(files);
+    }
+
+    public int getTermCount() {
+        return termCount;
+    }
+
+    public List<Occurrence> find(String term) {
+        List<Occurrence> occurrences = new ArrayList<>();
+        int index = findTerm(term);
+        if (index >= 0) {
+            forEachOccurrence(index, (fileId, line, column) ->
+                    occurrences.add(new Occurrence(fileId, files.get(fileId).getPath(), line, column)));
+        }
+        return occurrences;
+    }
+
+    public int getFileCount(String term) {
+        int index = findTerm(term);
+        return index < 0 ? 0 : map.getInt(termEntry(index) + 20);
+    }
+
+    String getTerm(int index) {
+        int entry = termEntry(index);
+        byte[] name = new byte[map.getInt(entry + 16)];
+        map.get(namesOffset + map.getInt(entry + 12), name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    void forEachOccurrence(int index, OccurrenceVisitor visitor) {
+        int entry = termEntry(index);
+        ByteBuffer postings = map.duplicate();
+        postings.position(postingsOffset + (int) map.getLong(entry));
+        int end = postings.position() + map.getInt(entry + 8);
+        int fileId = 0;
+
+        while (postings.position() < end) {
+            fileId += VarInts.read(postings);
+            int count = VarInts.read(postings);
+            int line = 0;
+            int column = 0;
+            for (int i = 0; i < count; i++) {
+                int lineDelta = VarInts.read(postings);
+                int columnDelta = VarInts.readSigned(postings);
+                line += lineDelta;
+                column = lineDelta == 0 ? column + columnDelta : columnDelta;
+                visitor.visit(fileId, line, column);
+            }
+        }
+    }
+
+    private int findTerm(String term) {
+        byte[] key = term.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = termCount - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compareName(middle, key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private int compareName(int index, byte[] key) {
+        int entry = termEntry(index);
+        int name = namesOffset + map.getInt(entry + 12);
+        int length = map.getInt(entry + 16);
+
+        for (int i = 0; i < Math.min(length, key.length); i++) {
+            int comparison = Integer.compare(map.get(name + i) & 0xFF, key[i] & 0xFF);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private int termEntry(int index) {
+        return termTableOffset + index * TERM_ENTRY_SIZE;
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    @FunctionalInterface
+    interface OccurrenceVisitor {
+        void visit(int fileId, int line, int column);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: IdentifierIndex <index> <term>...");
+            System.exit(2);
+        }
+        try (IdentifierIndex index = open(Paths.get(args[0]))) {
+            for (int i = 1; i < args.length; i++) {
+                long start = System.nanoTime();
+                List<Occurrence> occurrences = index.find(args[i]);
+                long elapsed = System.nanoTime() - start;
+                for (Occurrence occurrence : occurrences) {
+                    System.out.println(occurrence.getPath() + ":" + (occurrence.getLine() + 1) + ":"
+                            + (occurrence.getColumn() + 1) + "\t" + args[i]);
+                }
+                System.err.printf("%s: %d occurrences in %d us%n", args[i], occurrences.size(), elapsed / 1000);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package cyb.lexer.index;
+
+import cyb.lexer.Lexer;
+import cyb.lexer.TokenCursor;
+import cyb.lexer.TokenType;
+import cyb.lexer.batch.ParallelLexing;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds and incrementally updates an {@link IdentifierIndex}. On update only files whose size or
+ * modification time changed are lexed again; the postings of all other files are copied from the
+ * previous index.
+ */
+public class IdentifierIndexer {
+    private final EnumSet<TokenType> types;
+    private final int threads;
+
+    public IdentifierIndexer(Set<TokenType> types, int threads) {
+        this.types = EnumSet.copyOf(types);
+        this.threads = threads;
+    }
+
+    /**
+     * Writes the index of the given files, reusing the index already stored at {@code indexFile} when
+     * it was built for the same token types.
+     *
+     * @return the number of files that had to be lexed
+     */
+    public int update(List<Path> sources, Path indexFile) throws IOException {
+        List<IndexedFile> files = new ArrayList<>(sources.size());
+        Map<String, Integer> fileIds = new HashMap<>();
+        for (Path source : sources) {
+            String path = source.toString();
+            if (!fileIds.containsKey(path)) {
+                fileIds.put(path, files.size());
+                files.add(new IndexedFile(path, Files.size(source), Files.getLastModifiedTime(source).toMillis()));
+            }
+        }
+
+        FileTerms[] perFile = new FileTerms[files.size()];
+        for (int i = 0; i < perFile.length; i++) {
+            perFile[i] = new FileTerms();
+        }
+
+        boolean[] reused = new boolean[files.size()];
+        if (Files.exists(indexFile) && IdentifierIndex.isReadable(indexFile)) {
+            try (IdentifierIndex previous = IdentifierIndex.open(indexFile)) {
+                if (previous.getTypes().equals(types)) {
+                    reuse(previous, files, fileIds, perFile, reused);
+                }
+            }
+        }
+
+        List<Path> changed = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            if (!reused[i]) {
+                changed.add(Paths.get(files.get(i).getPath()));
+            }
+        }
+        ParallelLexing.process(changed, threads, () -> new Worker(types), (worker, name, in) ->
+                worker.collect(in, perFile[fileIds.get(name)]));
+
+        write(files, perFile, indexFile);
+        return changed.size();
+    }
+
+    private void reuse(IdentifierIndex previous, List<IndexedFile> files, Map<String, Integer> fileIds,
+                       FileTerms[] perFile, boolean[] reused) {
+        List<IndexedFile> previousFiles = previous.getFiles();
+        int[] mapping = new int[previousFiles.size()];
+        for (int i = 0; i < mapping.length; i++) {
+            IndexedFile old = previousFiles.get(i);
+            Integer id = fileIds.get(old.getPath());
+            mapping[i] = -1;
+            if (id != null && files.get(id).getSize() == old.getSize()
+                    && files.get(id).getLastModified() == old.getLastModified()) {
+                mapping[i] = id;
+                reused[id] = true;
+            }
+        }
+
+        for (int term = 0; term < previous.getTermCount(); term++) {
+            String name = previous.getTerm(term);
+            previous.forEachOccurrence(term, (fileId, line, column) -> {
+                if (mapping[fileId] >= 0) {
+                    perFile[mapping[fileId]].add(name, line, column);
+                }
+            });
+        }
+    }
+
+    private void write(List<IndexedFile> files, FileTerms[] perFile, Path indexFile) throws IOException {
+        Map<String, TermPostings> terms = new HashMap<>();
+        for (int id = 0; id < perFile.length; id++) {
+            for (Map.Entry<String, IntList> entry : perFile[id].occurrences.entrySet()) {
+                terms.computeIfAbsent(entry.getKey(), key -> new TermPostings()).add(id, entry.getValue());
+            }
+        }
+        // Sorted the way IdentifierIndex compares names: by their UTF-8 bytes, unsigned.
+        int termCount = terms.size();
+        byte[][] names = new byte[termCount][];
+        TermPostings[] postings = new TermPostings[termCount];
+        Integer[] order = new Integer[termCount];
+        int next = 0;
+        for (Map.Entry<String, TermPostings> entry : terms.entrySet()) {
+            names[next] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            postings[next] = entry.getValue();
+            order[next] = next;
+            next++;
+        }
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(names[a], names[b]));
+
+        Path temporary = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(IdentifierIndex.MAGIC);
+            out.writeInt(IdentifierIndex.VERSION);
+            out.writeInt(types.size());
+            for (TokenType type : types) {
+                writeString(out, type.name());
+            }
+            out.writeInt(files.size());
+            for (IndexedFile file : files) {
+                writeString(out, file.getPath());
+                out.writeLong(file.getSize());
+                out.writeLong(file.getLastModified());
+            }
+
+            long postingsOffset = out.size();
+            long[] postingsStarts = new long[termCount];
+            int[] postingsLengths = new int[termCount];
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            for (int i = 0; i < termCount; i++) {
+                encoded.reset();
+                postings[order[i]].encode(encoded);
+                postingsStarts[i] = out.size() - postingsOffset;
+                postingsLengths[i] = encoded.size();
+                encoded.writeTo(out);
+            }
+
+            long namesOffset = out.size();
+            int[] nameStarts = new int[termCount];
+            for (int i = 0; i < termCount; i++) {
+                nameStarts[i] = (int) (out.size() - namesOffset);
+                out.write(names[order[i]]);
+            }
+
+            long termTableOffset = out.size();
+            for (int i = 0; i < termCount; i++) {
+                out.writeLong(postingsStarts[i]);
+                out.writeInt(postingsLengths[i]);
+                out.writeInt(nameStarts[i]);
+                out.writeInt(names[order[i]].length);
+                out.writeInt(postings[order[i]].fileIds.size());
+            }
+
+            out.writeLong(termTableOffset);
+            out.writeLong(namesOffset);
+            out.writeLong(postingsOffset);
+            out.writeInt(termCount);
+            out.writeInt(IdentifierIndex.MAGIC);
+            if (out.size() == Integer.MAX_VALUE) {
+                throw new IOException("Identifier index is larger than 2 GB.");
+            }
+        }
+        Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static class FileTerms {
+        private final Map<String, IntList> occurrences = new HashMap<>();
+
+        void add(String term, int line, int column) {
+            IntList positions = occurrences.computeIfAbsent(term, key -> new IntList());
+            positions.add(line);
+            positions.add(column);
+        }
+    }
+
+    private static class TermPostings {
+        private final IntList fileIds = new IntList();
+        private final List<IntList> positions = new ArrayList<>();
+
+        void add(int fileId, IntList filePositions) {
+            fileIds.add(fileId);
+            positions.add(filePositions);
+        }
+
+        void encode(ByteArrayOutputStream out) {
+            int previousFile = 0;
+            for (int i = 0; i < fileIds.size(); i++) {
+                IntList filePositions = positions.get(i);
+                VarInts.write(out, fileIds.get(i) - previousFile);
+                VarInts.write(out, filePositions.size() / 2);
+                previousFile = fileIds.get(i);
+
+                int line = 0;
+                int column = 0;
+                for (int j = 0; j < filePositions.size(); j += 2) {
+                    int lineDelta = filePositions.get(j) - line;
+                    VarInts.write(out, lineDelta);
+                    VarInts.writeSigned(out, lineDelta == 0 ? filePositions.get(j + 1) - column
+                            : filePositions.get(j + 1));
+                    line = filePositions.get(j);
+                    column = filePositions.get(j + 1);
+                }
+            }
+        }
+    }
+
+    private static class Worker {
+        private final TokenCursor cursor = new TokenCursor();
+        private final Lexer lexer = ParallelLexing.reusableLexer();
+
+        Worker(EnumSet<TokenType> types) {
+            lexer.setTokenFilter(types);
+        }
+
+        void collect(InputStream in, FileTerms terms) throws IOException {
+            lexer.reset(in);
+            while (lexer.next(cursor)) {
+                terms.add(cursor.getValue().toString(), cursor.getLine(), cursor.getColumn());
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: IdentifierIndexer <root> <index> [token types, comma separated]");
+            System.exit(2);
+        }
+        try {
+            EnumSet<TokenType> types = EnumSet.of(TokenType.IDENTIFIER);
+            if (args.length > 2) {
+                types.clear();
+                for (String type : args[2].split(",")) {
+                    types.add(TokenType.valueOf(type.trim()));
+                }
+            }
+            List<Path> files = ParallelLexing.findSources(Paths.get(args[0]));
+            int lexed = new IdentifierIndexer(types, ParallelLexing.defaultThreads()).update(files, Paths.get(args[1]));
+            System.err.printf("%d files indexed, %d lexed%n", files.size(), lexed);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package cyb.lexer.index;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class IndexedFile {
+    private final String path;
+    private final long size;
+    private final long lastModified;
+}
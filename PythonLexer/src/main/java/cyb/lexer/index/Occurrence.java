@@ -0,0 +1,13 @@
+package cyb.lexer.index;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class Occurrence {
+    private final int fileId;
+    private final String path;
+    private final int line;
+    private final int column;
+}
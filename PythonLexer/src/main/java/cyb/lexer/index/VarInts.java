@@ -0,0 +1,36 @@
+package cyb.lexer.index;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+abstract class VarInts {
+
+    static void write(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    static void writeSigned(ByteArrayOutputStream out, int value) {
+        write(out, (value << 1) ^ (value >> 31));
+    }
+
+    static int read(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    static int readSigned(ByteBuffer in) {
+        int value = read(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
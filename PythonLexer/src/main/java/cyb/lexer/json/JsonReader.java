@@ -0,0 +1,397 @@
+package cyb.lexer.json;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal pull parser for JSON text. Values are read one token at a time, so a document does not have to
+ * be held in memory; {@link #skipValue()} passes over a value of any size without buffering it.
+ */
+public class JsonReader {
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT = 2;
+    private static final int NONEMPTY_OBJECT = 3;
+    private static final int DANGLING_NAME = 4;
+    private static final int EMPTY_ARRAY = 5;
+    private static final int NONEMPTY_ARRAY = 6;
+
+    private final Reader in;
+    private final char[] chars = new char[8192];
+    private int position;
+    private int limit;
+    private int[] stack = new int[32];
+    private int stackSize = 1;
+    private JsonToken peeked;
+    private final StringBuilder text = new StringBuilder();
+
+    public JsonReader(Reader in) {
+        this.in = in;
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+    public static Object parse(String json) throws IOException {
+        JsonReader reader = new JsonReader(new StringReader(json));
+        Object value = reader.readValue();
+        if (reader.peek() != JsonToken.END_DOCUMENT) {
+            throw reader.syntaxError("Unexpected data after the document");
+        }
+        return value;
+    }
+
+    public JsonToken peek() throws IOException {
+        if (peeked != null) {
+            return peeked;
+        }
+
+        switch (stack[stackSize - 1]) {
+            case EMPTY_ARRAY -> {
+                stack[stackSize - 1] = NONEMPTY_ARRAY;
+                int c = nextNonWhitespace();
+                if (c == ']') {
+                    return peeked = JsonToken.END_ARRAY;
+                }
+                unread(c);
+            }
+            case NONEMPTY_ARRAY -> {
+                int c = nextNonWhitespace();
+                if (c == ']') {
+                    return peeked = JsonToken.END_ARRAY;
+                } else if (c != ',') {
+                    throw syntaxError("Expected ',' or ']'");
+                }
+            }
+            case EMPTY_OBJECT, NONEMPTY_OBJECT -> {
+                int c = nextNonWhitespace();
+                if (c == '}') {
+                    return peeked = JsonToken.END_OBJECT;
+                }
+                if (stack[stackSize - 1] == NONEMPTY_OBJECT) {
+                    if (c != ',') {
+                        throw syntaxError("Expected ',' or '}'");
+                    }
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') {
+                    throw syntaxError("Expected a name");
+                }
+                stack[stackSize - 1] = DANGLING_NAME;
+                return peeked = JsonToken.NAME;
+            }
+            case DANGLING_NAME -> {
+                stack[stackSize - 1] = NONEMPTY_OBJECT;
+                if (nextNonWhitespace() != ':') {
+                    throw syntaxError("Expected ':'");
+                }
+            }
+            case EMPTY_DOCUMENT -> stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+            case NONEMPTY_DOCUMENT -> {
+                if (nextNonWhitespace() < 0) {
+                    return peeked = JsonToken.END_DOCUMENT;
+                }
+                throw syntaxError("Unexpected data after the document");
+            }
+        }
+
+        int c = nextNonWhitespace();
+        switch (c) {
+            case '{' -> peeked = JsonToken.BEGIN_OBJECT;
+            case '[' -> peeked = JsonToken.BEGIN_ARRAY;
+            case '"' -> peeked = JsonToken.STRING;
+            case 't', 'f' -> {
+                position--;
+                peeked = JsonToken.BOOLEAN;
+            }
+            case 'n' -> {
+                position--;
+                peeked = JsonToken.NULL;
+            }
+            default -> {
+                if (c != '-' && (c < '0' || c > '9')) {
+                    throw syntaxError(c < 0 ? "Unexpected end of input" : "Unexpected character");
+                }
+                position--;
+                peeked = JsonToken.NUMBER;
+            }
+        }
+        return peeked;
+    }
+
+    public boolean hasNext() throws IOException {
+        JsonToken token = peek();
+        return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY && token != JsonToken.END_DOCUMENT;
+    }
+
+    public void beginObject() throws IOException {
+        expect(JsonToken.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        expect(JsonToken.END_OBJECT);
+        stackSize--;
+    }
+
+    public void beginArray() throws IOException {
+        expect(JsonToken.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        expect(JsonToken.END_ARRAY);
+        stackSize--;
+    }
+
+    public String nextName() throws IOException {
+        expect(JsonToken.NAME);
+        text.setLength(0);
+        readString(text);
+        return text.toString();
+    }
+
+    public String nextString() throws IOException {
+        expect(JsonToken.STRING);
+        text.setLength(0);
+        readString(text);
+        return text.toString();
+    }
+
+    /**
+     * Starts reading a string value char by char with {@link #nextStringChar()}, for strings too large to be
+     * held in memory. The string has to be read to its end before the reader is used otherwise.
+     */
+    public void beginString() throws IOException {
+        expect(JsonToken.STRING);
+    }
+
+    /**
+     * @return the next unescaped char of the string started with {@link #beginString()}, or -1 at its end
+     */
+    public int nextStringChar() throws IOException {
+        int c = read();
+        if (c == '"') {
+            return -1;
+        } else if (c < 0) {
+            throw syntaxError("Unterminated string");
+        }
+        return c == '\\' ? readEscape() : c;
+    }
+
+    public String nextNumber() throws IOException {
+        expect(JsonToken.NUMBER);
+        text.setLength(0);
+        for (int c = read(); c >= 0; c = read()) {
+            if ((c < '0' || c > '9') && c != '-' && c != '+' && c != '.' && c != 'e' && c != 'E') {
+                unread(c);
+                break;
+            }
+            text.append((char) c);
+        }
+        return text.toString();
+    }
+
+    public boolean nextBoolean() throws IOException {
+        expect(JsonToken.BOOLEAN);
+        boolean value = read() == 't';
+        readLiteral(value ? "rue" : "alse");
+        return value;
+    }
+
+    public void nextNull() throws IOException {
+        expect(JsonToken.NULL);
+        position++;
+        readLiteral("ull");
+    }
+
+    public void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT -> {
+                    beginObject();
+                    depth++;
+                }
+                case BEGIN_ARRAY -> {
+                    beginArray();
+                    depth++;
+                }
+                case END_OBJECT -> {
+                    endObject();
+                    depth--;
+                }
+                case END_ARRAY -> {
+                    endArray();
+                    depth--;
+                }
+                case NAME, STRING -> {
+                    peeked = null;
+                    readString(null);
+                }
+                case NUMBER -> nextNumber();
+                case BOOLEAN -> nextBoolean();
+                case NULL -> nextNull();
+                case END_DOCUMENT -> throw syntaxError("Unexpected end of input");
+            }
+        } while (depth > 0);
+    }
+
+    /**
+     * Reads the next value as nested {@link Map}s, {@link List}s, strings, numbers ({@link Long} when
+     * integral, otherwise {@link Double}), booleans and nulls.
+     */
+    public Object readValue() throws IOException {
+        switch (peek()) {
+            case BEGIN_OBJECT -> {
+                Map<String, Object> object = new LinkedHashMap<>();
+                beginObject();
+                while (hasNext()) {
+                    String name = nextName();
+                    object.put(name, readValue());
+                }
+                endObject();
+                return object;
+            }
+            case BEGIN_ARRAY -> {
+                List<Object> array = new ArrayList<>();
+                beginArray();
+                while (hasNext()) {
+                    array.add(readValue());
+                }
+                endArray();
+                return array;
+            }
+            case STRING -> {
+                return nextString();
+            }
+            case NUMBER -> {
+                String number = nextNumber();
+                try {
+                    return Long.parseLong(number);
+                } catch (NumberFormatException e) {
+                    try {
+                        return Double.parseDouble(number);
+                    } catch (NumberFormatException invalid) {
+                        throw syntaxError("Malformed number");
+                    }
+                }
+            }
+            case BOOLEAN -> {
+                return nextBoolean();
+            }
+            case NULL -> {
+                nextNull();
+                return null;
+            }
+            default -> throw syntaxError("Expected a value");
+        }
+    }
+
+    // Reads the rest of a string whose opening quote has been consumed; the chars are dropped when out is null.
+    private void readString(StringBuilder out) throws IOException {
+        for (int c = read(); c != '"'; c = read()) {
+            if (c < 0) {
+                throw syntaxError("Unterminated string");
+            }
+            if (c == '\\') {
+                c = readEscape();
+            }
+            if (out != null) {
+                out.append((char) c);
+            }
+        }
+    }
+
+    private int readEscape() throws IOException {
+        int c = read();
+        switch (c) {
+            case '"', '\\', '/' -> {
+                return c;
+            }
+            case 'b' -> {
+                return '\b';
+            }
+            case 'f' -> {
+                return '\f';
+            }
+            case 'n' -> {
+                return '\n';
+            }
+            case 'r' -> {
+                return '\r';
+            }
+            case 't' -> {
+                return '\t';
+            }
+            case 'u' -> {
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Malformed unicode escape");
+                    }
+                    value = value * 16 + digit;
+                }
+                return value;
+            }
+            default -> throw syntaxError("Invalid escape sequence");
+        }
+    }
+
+    private void readLiteral(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++) {
+            if (read() != rest.charAt(i)) {
+                throw syntaxError("Malformed literal");
+            }
+        }
+    }
+
+    private void expect(JsonToken token) throws IOException {
+        if (peek() != token) {
+            throw syntaxError("Expected " + token + " but was " + peeked);
+        }
+        peeked = null;
+    }
+
+    private void push(int context) {
+        if (stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, stackSize * 2);
+        }
+        stack[stackSize++] = context;
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int c = read();
+        while (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+            c = read();
+        }
+        return c;
+    }
+
+    private void unread(int c) {
+        if (c >= 0) {
+            position--;
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            int count = in.read(chars, 0, chars.length);
+            if (count <= 0) {
+                return -1;
+            }
+            position = 0;
+            limit = count;
+        }
+        return chars[position++];
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException(message + " in JSON input.");
+    }
+}
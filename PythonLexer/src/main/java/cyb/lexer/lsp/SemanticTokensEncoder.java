@@ -0,0 +1,237 @@
+package cyb.lexer.lsp;
+
+import cyb.lexer.Lexer;
+import cyb.lexer.TokenCursor;
+import cyb.lexer.TokenType;
+import cyb.lexer.batch.ParallelLexing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Turns a document into LSP semantic tokens: five ints per token holding the line delta, the start
+ * delta (relative to the previous token when on the same line), the length, the index into
+ * {@link #TOKEN_TYPES} and the modifier bits. Instances reuse their lexer and arrays and are not
+ * thread-safe.
+ */
+public class SemanticTokensEncoder {
+    public static final List<String> TOKEN_TYPES = List.of("keyword", "variable", "string", "number", "operator");
+
+    private static final int KEYWORD = 0;
+    private static final int VARIABLE = 1;
+    private static final int STRING = 2;
+    private static final int NUMBER = 3;
+    private static final int OPERATOR = 4;
+    private static final EnumSet<TokenType> HIGHLIGHTED = EnumSet.noneOf(TokenType.class);
+
+    static {
+        for (TokenType type : TokenType.values()) {
+            if (classify(type) >= 0) {
+                HIGHLIGHTED.add(type);
+            }
+        }
+    }
+
+    private final TokenCursor cursor = new TokenCursor();
+    private final Lexer lexer = ParallelLexing.reusableLexer();
+    private int[] data = new int[1024];
+    private int[] lineStarts = new int[256];
+    private int mappedLine;
+    private int mappedBytes;
+    private int mappedChars;
+
+    public SemanticTokensEncoder() {
+        lexer.setTokenFilter(HIGHLIGHTED);
+    }
+
+    public int[] encode(String text) throws IOException {
+        lexer.reset(new TextInputStream(text));
+        int lines = findLineStarts(text);
+        mappedLine = -1;
+
+        int size = 0;
+        int previousLine = 0;
+        int previousColumn = 0;
+        while (lexer.next(cursor)) {
+            int line = cursor.getLine();
+            int column = line < lines ? toCharColumn(text, line, cursor.getColumn()) : cursor.getColumn();
+            int tokenType = classify(cursor.getType());
+            int length = switch (tokenType) {
+                case STRING -> stringLength(text, line < lines ? lineStarts[line] + column : text.length());
+                case VARIABLE, NUMBER -> cursor.getValue().length();
+                default -> cursor.getType().getValue().length();
+            };
+
+            if (size + 5 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[size++] = line - previousLine;
+            data[size++] = line == previousLine ? column - previousColumn : column;
+            data[size++] = length;
+            data[size++] = tokenType;
+            data[size++] = 0;
+            previousLine = line;
+            previousColumn = column;
+        }
+        return Arrays.copyOf(data, size);
+    }
+
+    private static int classify(TokenType type) {
+        if (type.ordinal() >= TokenType.AND.ordinal() && type.ordinal() <= TokenType.YIELD.ordinal()) {
+            return KEYWORD;
+        }
+        return switch (type) {
+            case IDENTIFIER -> VARIABLE;
+            case STRING_LITERAL, BYTES_LITERAL, FORMATTED_STRING_LITERAL -> STRING;
+            case INTEGER_LITERAL, FLOATING_POINT_LITERAL, IMAGINARY_LITERAL -> NUMBER;
+            case NEWLINE, INDENT, DEDENT, ERROR, LEFT_PARENTHESIS, RIGHT_PARENTHESIS, LEFT_SQUARE_BRACKET,
+                    RIGHT_SQUARE_BRACKET, LEFT_CURLY_BRACKET, RIGHT_CURLY_BRACKET, COMMA, COLON, DOT,
+                    SEMICOLON -> -1;
+            default -> OPERATOR;
+        };
+    }
+
+    private int findLineStarts(String text) {
+        int lines = 0;
+        lineStarts[lines++] = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                if (lines == lineStarts.length) {
+                    lineStarts = Arrays.copyOf(lineStarts, lines * 2);
+                }
+                lineStarts[lines++] = i + 1;
+            }
+        }
+        return lines;
+    }
+
+    // Converts a lexer column, which counts UTF-8 bytes from the line start, to UTF-16 units. Tokens come
+    // in order, so the walk resumes where the previous token on the same line left it.
+    private int toCharColumn(String text, int line, int byteColumn) {
+        if (line != mappedLine || byteColumn < mappedBytes) {
+            mappedLine = line;
+            mappedBytes = 0;
+            mappedChars = 0;
+        }
+        int start = lineStarts[line];
+        while (mappedBytes < byteColumn && start + mappedChars < text.length()) {
+            int i = start + mappedChars;
+            char c = text.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                mappedBytes += 4;
+                mappedChars += 2;
+            } else {
+                mappedBytes += utf8Length(c);
+                mappedChars++;
+            }
+        }
+        return mappedChars;
+    }
+
+    // Unpaired surrogates are encoded as '?'.
+    private static int utf8Length(char c) {
+        if (c < 0x80 || Character.isSurrogate(c)) {
+            return 1;
+        }
+        return c < 0x800 ? 2 : 3;
+    }
+
+    // The lexer reports decoded string values, so the source length is measured on the text. A token
+    // that spans several lines is cut at the end of its first line, as LSP tokens are single-line.
+    private static int stringLength(String text, int start) {
+        int lineEnd = text.indexOf('\n', start);
+        if (lineEnd < 0) {
+            lineEnd = text.length();
+        }
+        if (lineEnd > start && text.charAt(lineEnd - 1) == '\r') {
+            lineEnd--;
+        }
+
+        int i = start;
+        while (i < lineEnd && text.charAt(i) != '\'' && text.charAt(i) != '"') {
+            i++;
+        }
+        if (i == lineEnd) {
+            return lineEnd - start;
+        }
+        char quote = text.charAt(i);
+        int quotes = isTripleQuote(text, i, lineEnd) ? 3 : 1;
+        i += quotes;
+
+        while (i < lineEnd) {
+            if (text.charAt(i) == '\\') {
+                i += 2;
+            } else if (text.charAt(i) == quote && (quotes == 1 || isTripleQuote(text, i, lineEnd))) {
+                i += quotes;
+                break;
+            } else {
+                i++;
+            }
+        }
+        return Math.min(i, lineEnd) - start;
+    }
+
+    private static boolean isTripleQuote(String text, int i, int end) {
+        return i + 2 < end && text.charAt(i + 1) == text.charAt(i) && text.charAt(i + 2) == text.charAt(i);
+    }
+
+    // Feeds the document to the lexer as UTF-8, so it is lexed exactly like a source file with that content.
+    private static class TextInputStream extends InputStream {
+        private final String text;
+        private int position;
+        private final byte[] encoded = new byte[4];
+        private int encodedPosition;
+        private int encodedLength;
+
+        TextInputStream(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public int read() {
+            if (encodedPosition == encodedLength && !encodeNext()) {
+                return -1;
+            }
+            return encoded[encodedPosition++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            int count = 0;
+            while (count < len && (encodedPosition < encodedLength || encodeNext())) {
+                b[off + count++] = encoded[encodedPosition++];
+            }
+            return count == 0 && len > 0 ? -1 : count;
+        }
+
+        private boolean encodeNext() {
+            if (position == text.length()) {
+                return false;
+            }
+            char c = text.charAt(position++);
+            encodedPosition = 0;
+            encodedLength = 0;
+            if (Character.isHighSurrogate(c) && position < text.length()
+                    && Character.isLowSurrogate(text.charAt(position))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(position++));
+                encoded[encodedLength++] = (byte) (0xF0 | (codePoint >> 18));
+                encoded[encodedLength++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                encoded[encodedLength++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                encoded[encodedLength++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (c < 0x80 || Character.isSurrogate(c)) {
+                encoded[encodedLength++] = (byte) (c < 0x80 ? c : '?');
+            } else if (c < 0x800) {
+                encoded[encodedLength++] = (byte) (0xC0 | (c >> 6));
+                encoded[encodedLength++] = (byte) (0x80 | (c & 0x3F));
+            } else {
+                encoded[encodedLength++] = (byte) (0xE0 | (c >> 12));
+                encoded[encodedLength++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                encoded[encodedLength++] = (byte) (0x80 | (c & 0x3F));
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package cyb.lexer.lsp;
+
+import cyb.lexer.json.JsonReader;
+import cyb.lexer.json.JsonWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Language server that answers {@code textDocument/semanticTokens/full} and {@code .../full/delta} over
+ * stdio. Open documents are kept in memory together with their last reported tokens, so a delta
+ * request only has to lex the document again and send the changed middle part of the token array.
+ * Documents are synchronized in full, which matches how the lexer reads a whole file at a time.
+ */
+public class SemanticTokensServer {
+    private static final int TEXT_DOCUMENT_SYNC_FULL = 1;
+    private static final int METHOD_NOT_FOUND = -32601;
+    private static final int INVALID_PARAMS = -32602;
+    private static final int PARSE_ERROR = -32700;
+
+    private final InputStream in;
+    private final OutputStream out;
+    private final Map<String, Document> documents = new HashMap<>();
+    private final SemanticTokensEncoder encoder = new SemanticTokensEncoder();
+    private long nextResultId = 1;
+    private boolean shutdown;
+
+    public SemanticTokensServer(InputStream in, OutputStream out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    /**
+     * Serves requests until the client sends {@code exit} or closes the input.
+     *
+     * @return the process exit code expected by LSP
+     */
+    public int run() throws IOException {
+        String message;
+        while ((message = readMessage()) != null) {
+            Map<String, Object> request;
+            try {
+                request = asObject(JsonReader.parse(message));
+            } catch (IOException | ClassCastException e) {
+                sendError(null, PARSE_ERROR, e.getMessage());
+                continue;
+            }
+            if ("exit".equals(request.get("method"))) {
+                return shutdown ? 0 : 1;
+            }
+            handle(request);
+        }
+        return shutdown ? 0 : 1;
+    }
+
+    private void handle(Map<String, Object> request) throws IOException {
+        Object id = request.get("id");
+        String method = (String) request.get("method");
+        if (method == null) {
+            return;
+        }
+
+        try {
+            Map<String, Object> params = request.get("params") == null ? Map.of() : asObject(request.get("params"));
+            switch (method) {
+                case "initialize" -> sendResult(id, initializeResult());
+                case "shutdown" -> {
+                    shutdown = true;
+                    sendResult(id, null);
+                }
+                case "textDocument/didOpen" -> {
+                    Map<String, Object> document = asObject(params.get("textDocument"));
+                    documents.put((String) document.get("uri"), new Document((String) document.get("text")));
+                }
+                case "textDocument/didChange" -> {
+                    Document document = documents.get(uri(params));
+                    List<?> changes = (List<?>) params.get("contentChanges");
+                    if (document != null && !changes.isEmpty()) {
+                        document.update((String) asObject(changes.get(changes.size() - 1)).get("text"));
+                    }
+                }
+                case "textDocument/didClose" -> documents.remove(uri(params));
+                case "textDocument/semanticTokens/full" -> sendResult(id, full(documents.get(uri(params))));
+                case "textDocument/semanticTokens/full/delta" ->
+                        sendResult(id, delta(documents.get(uri(params)), (String) params.get("previousResultId")));
+                default -> {
+                    if (id != null) {
+                        sendError(id, METHOD_NOT_FOUND, "Unsupported method " + method + ".");
+                    }
+                }
+            }
+        } catch (ClassCastException | NullPointerException e) {
+            if (id != null) {
+                sendError(id, INVALID_PARAMS, "Invalid parameters for " + method + ".");
+            }
+        }
+    }
+
+    private Map<String, Object> initializeResult() {
+        Map<String, Object> legend = new LinkedHashMap<>();
+        legend.put("tokenTypes", SemanticTokensEncoder.TOKEN_TYPES);
+        legend.put("tokenModifiers", List.of());
+
+        Map<String, Object> provider = new LinkedHashMap<>();
+        provider.put("legend", legend);
+        provider.put("full", Map.of("delta", true));
+
+        Map<String, Object> capabilities = new LinkedHashMap<>();
+        capabilities.put("textDocumentSync", TEXT_DOCUMENT_SYNC_FULL);
+        capabilities.put("semanticTokensProvider", provider);
+        return Map.of("capabilities", capabilities);
+    }
+
+    private Map<String, Object> full(Document document) throws IOException {
+        int[] data = document.tokens(encoder);
+        document.reported = data;
+        document.resultId = Long.toString(nextResultId++);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("resultId", document.resultId);
+        result.put("data", data);
+        return result;
+    }
+
+    private Map<String, Object> delta(Document document, String previousResultId) throws IOException {
+        if (document.reported == null || !document.resultId.equals(previousResultId)) {
+            return full(document);
+        }
+        int[] previous = document.reported;
+        int[] current = document.tokens(encoder);
+
+        int prefix = 0;
+        int limit = Math.min(previous.length, current.length);
+        while (prefix < limit && previous[prefix] == current[prefix]) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < limit - prefix
+                && previous[previous.length - 1 - suffix] == current[current.length - 1 - suffix]) {
+            suffix++;
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        document.reported = current;
+        document.resultId = Long.toString(nextResultId++);
+        result.put("resultId", document.resultId);
+        if (prefix == previous.length && prefix == current.length) {
+            result.put("edits", List.of());
+        } else {
+            Map<String, Object> edit = new LinkedHashMap<>();
+            edit.put("start", prefix);
+            edit.put("deleteCount", previous.length - prefix - suffix);
+            edit.put("data", Arrays.copyOfRange(current, prefix, current.length - suffix));
+            result.put("edits", List.of(edit));
+        }
+        return result;
+    }
+
+    private String readMessage() throws IOException {
+        int length = -1;
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        while (true) {
+            int c = in.read();
+            if (c < 0) {
+                return null;
+            }
+            if (c != '\n') {
+                line.write(c);
+                continue;
+            }
+
+            String header = line.toString(StandardCharsets.US_ASCII).trim();
+            line.reset();
+            if (header.isEmpty()) {
+                if (length >= 0) {
+                    break;
+                }
+            } else if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                length = Integer.parseInt(header.substring(15).trim());
+            }
+        }
+
+        byte[] content = in.readNBytes(length);
+        if (content.length < length) {
+            return null;
+        }
+        return new String(content, StandardCharsets.UTF_8);
+    }
+
+    private void sendResult(Object id, Object result) throws IOException {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("jsonrpc", "2.0");
+        response.put("id", id);
+        response.put("result", result);
+        send(response);
+    }
+
+    private void sendError(Object id, int code, String message) throws IOException {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("code", code);
+        error.put("message", message);
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("jsonrpc", "2.0");
+        response.put("id", id);
+        response.put("error", error);
+        send(response);
+    }
+
+    private void send(Map<String, Object> message) throws IOException {
+        byte[] content = JsonWriter.write(message).getBytes(StandardCharsets.UTF_8);
+        out.write(("Content-Length: " + content.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(content);
+        out.flush();
+    }
+
+    private static String uri(Map<String, Object> params) {
+        return (String) asObject(params.get("textDocument")).get("uri");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asObject(Object value) {
+        return (Map<String, Object>) value;
+    }
+
+    private static class Document {
+        private String text;
+        private int[] tokens;
+        private int[] reported;
+        private String resultId;
+
+        Document(String text) {
+            this.text = text;
+        }
+
+        void update(String text) {
+            this.text = text;
+            tokens = null;
+        }
+
+        int[] tokens(SemanticTokensEncoder encoder) throws IOException {
+            if (tokens == null) {
+                tokens = encoder.encode(text);
+            }
+            return tokens;
+        }
+    }
+
+    public static void main(String[] args) {
+        try {
+            SemanticTokensServer server = new SemanticTokensServer(new BufferedInputStream(System.in),
+                    new BufferedOutputStream(System.out));
+            System.exit(server.run());
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package cyb.lexer.notebook;
+
+import cyb.lexer.Lexer;
+import cyb.lexer.TokenCursor;
+import cyb.lexer.batch.ParallelLexing;
+import cyb.lexer.json.JsonReader;
+import cyb.lexer.json.JsonToken;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Lexes the code cells of a Jupyter notebook (nbformat 4) while streaming through its JSON. Outputs and
+ * metadata are skipped without being buffered, and a cell's source is unescaped and fed to the lexer
+ * char by char as long as the cell type is known before the source, which is the case for notebooks
+ * written by Jupyter; otherwise only that cell's source is buffered. Sources are passed to the lexer as
+ * UTF-8, so a cell lexes exactly like a .py file with the same content.
+ * <p>
+ * Every cell is lexed with fresh indentation state. Token lines and columns are relative to the cell, and
+ * {@link #getCell()} tells which cell the last token came from.
+ */
+public class NotebookLexer {
+    private final JsonReader json;
+    private final Lexer lexer = ParallelLexing.reusableLexer();
+    private boolean inCells;
+    private boolean finished;
+    private boolean inCellObject;
+    private int cell = -1;
+    private boolean lexing;
+
+    public NotebookLexer(InputStream in) {
+        json = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Moves the cursor to the next token of the next code cell.
+     *
+     * @return false after the last code cell
+     */
+    public boolean next(TokenCursor cursor) throws IOException {
+        while (true) {
+            if (lexing && lexer.next(cursor)) {
+                return true;
+            }
+            lexing = false;
+            if (finished || !nextCodeCell()) {
+                finished = true;
+                return false;
+            }
+            lexing = true;
+        }
+    }
+
+    /**
+     * @return the index of the cell the last token came from, counting cells of all types
+     */
+    public int getCell() {
+        return cell;
+    }
+
+    private boolean nextCodeCell() throws IOException {
+        if (!inCells && !enterCells()) {
+            return false;
+        }
+        if (inCellObject) {
+            finishCell();
+        }
+
+        while (json.hasNext()) {
+            cell++;
+            json.beginObject();
+            inCellObject = true;
+            String type = null;
+            String bufferedSource = null;
+
+            while (json.hasNext()) {
+                String name = json.nextName();
+                if (name.equals("cell_type")) {
+                    type = json.nextString();
+                } else if (name.equals("source") && "code".equals(type)) {
+                    lexer.reset(new SourceInputStream(json));
+                    return true;
+                } else if (name.equals("source") && type == null) {
+                    bufferedSource = readSource();
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+            inCellObject = false;
+
+            if ("code".equals(type) && bufferedSource != null) {
+                lexer.reset(new ByteArrayInputStream(bufferedSource.getBytes(StandardCharsets.UTF_8)));
+                return true;
+            }
+        }
+        json.endArray();
+        return false;
+    }
+
+    private boolean enterCells() throws IOException {
+        json.beginObject();
+        while (json.hasNext()) {
+            if (json.nextName().equals("cells")) {
+                json.beginArray();
+                inCells = true;
+                return true;
+            }
+            json.skipValue();
+        }
+        return false;
+    }
+
+    private void finishCell() throws IOException {
+        while (json.hasNext()) {
+            json.nextName();
+            json.skipValue();
+        }
+        json.endObject();
+        inCellObject = false;
+    }
+
+    private String readSource() throws IOException {
+        if (json.peek() == JsonToken.STRING) {
+            return json.nextString();
+        }
+        StringBuilder source = new StringBuilder();
+        json.beginArray();
+        while (json.hasNext()) {
+            source.append(json.nextString());
+        }
+        json.endArray();
+        return source.toString();
+    }
+
+    // Streams a source value, either one string or an array of lines, as UTF-8 straight from the JSON reader.
+    private static class SourceInputStream extends InputStream {
+        private final JsonReader json;
+        private final boolean lines;
+        private boolean inString;
+        private boolean finished;
+        private final byte[] encoded = new byte[4];
+        private int encodedPosition;
+        private int encodedLength;
+        private int pending = -1;
+
+        SourceInputStream(JsonReader json) throws IOException {
+            this.json = json;
+            lines = json.peek() == JsonToken.BEGIN_ARRAY;
+            if (lines) {
+                json.beginArray();
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (encodedPosition < encodedLength) {
+                return encoded[encodedPosition++] & 0xFF;
+            }
+            int c = nextChar();
+            if (c < 0) {
+                return -1;
+            }
+            if (c < 0x80) {
+                return c;
+            }
+
+            encodedPosition = 0;
+            encodedLength = 0;
+            if (c < 0x800) {
+                encoded[encodedLength++] = (byte) (0xC0 | (c >> 6));
+            } else {
+                if (Character.isHighSurrogate((char) c)) {
+                    int low = nextChar();
+                    if (low >= 0 && Character.isLowSurrogate((char) low)) {
+                        int codePoint = Character.toCodePoint((char) c, (char) low);
+                        encoded[encodedLength++] = (byte) (0xF0 | (codePoint >> 18));
+                        encoded[encodedLength++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                        encoded[encodedLength++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                        encoded[encodedLength++] = (byte) (0x80 | (codePoint & 0x3F));
+                        return encoded[encodedPosition++] & 0xFF;
+                    }
+                    pending = low;
+                    return '?';
+                }
+                if (Character.isLowSurrogate((char) c)) {
+                    return '?';
+                }
+                encoded[encodedLength++] = (byte) (0xE0 | (c >> 12));
+                encoded[encodedLength++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            }
+            encoded[encodedLength++] = (byte) (0x80 | (c & 0x3F));
+            return encoded[encodedPosition++] & 0xFF;
+        }
+
+        private int nextChar() throws IOException {
+            if (pending >= 0) {
+                int c = pending;
+                pending = -1;
+                return c;
+            }
+            while (!finished) {
+                if (inString) {
+                    int c = json.nextStringChar();
+                    if (c >= 0) {
+                        return c;
+                    }
+                    inString = false;
+                    if (!lines) {
+                        finished = true;
+                    }
+                } else if (lines && !json.hasNext()) {
+                    json.endArray();
+                    finished = true;
+                } else {
+                    json.beginString();
+                    inString = true;
+                }
+            }
+            return -1;
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: NotebookLexer <notebook.ipynb>");
+            System.exit(2);
+        }
+        try (InputStream in = Files.newInputStream(Paths.get(args[0]))) {
+            NotebookLexer notebook = new NotebookLexer(in);
+            TokenCursor cursor = new TokenCursor();
+            StringBuilder out = new StringBuilder();
+            while (notebook.next(cursor)) {
+                out.setLength(0);
+                out.append("cell ").append(notebook.getCell()).append(' ').append(cursor.getLine() + 1).append(':')
+                        .append(cursor.getColumn() + 1).append('\t').append(cursor.getType()).append('\t')
+                        .append(cursor.getValue());
+                System.out.println(out);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package cyb.lexer.outline;
+
+import cyb.lexer.Lexer;
+import cyb.lexer.TokenCursor;
+import cyb.lexer.TokenType;
+import cyb.lexer.batch.ParallelLexing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Extracts module outlines (imports, classes, functions and their decorators) straight from the token
+ * stream. Nesting follows INDENT and DEDENT tokens. The lexer's token filter is switched while reading:
+ * between statements only line structure and the keywords a statement may start with are delivered, and
+ * the identifiers and dots of a name, decorator or import are enabled only while one is being read. The
+ * rest of every other statement, including whole function bodies, is lexed without any token being
+ * delivered. Imports are only collected outside of functions. Instances reuse their lexer and are not
+ * thread-safe.
+ */
+public class OutlineExtractor {
+    private static final EnumSet<TokenType> SKIP = EnumSet.of(TokenType.NEWLINE, TokenType.INDENT, TokenType.DEDENT);
+    private static final EnumSet<TokenType> STATEMENT_START = with(SKIP, TokenType.DEF, TokenType.CLASS,
+            TokenType.AT, TokenType.ASYNC, TokenType.IMPORT, TokenType.FROM);
+    private static final EnumSet<TokenType> NAME = with(SKIP, TokenType.IDENTIFIER);
+    private static final EnumSet<TokenType> DECORATOR = with(NAME, TokenType.DOT, TokenType.LEFT_PARENTHESIS);
+    private static final EnumSet<TokenType> IMPORT = with(NAME, TokenType.DOT, TokenType.COMMA, TokenType.AS,
+            TokenType.IMPORT, TokenType.ASTERISK);
+
+    private enum State {
+        STATEMENT,
+        ASYNC,
+        NAME,
+        DECORATOR,
+        IMPORT,
+        SKIP
+    }
+
+    private final TokenCursor cursor = new TokenCursor();
+    private final Lexer lexer = ParallelLexing.reusableLexer();
+    private EnumSet<TokenType> filter;
+    private final StringBuilder text = new StringBuilder();
+
+    private OutlineNode[] scopes = new OutlineNode[16];
+    private int[] scopeLevels = new int[16];
+    private int scopeCount;
+    private int[] indents = new int[16];
+    private int depth;
+
+    public OutlineNode extract(String name, InputStream in) throws IOException {
+        lexer.reset(in);
+        OutlineNode root = new OutlineNode(OutlineNode.Kind.MODULE, name, 0, List.of());
+        scopes[0] = root;
+        scopeLevels[0] = 0;
+        scopeCount = 1;
+        indents[0] = 0;
+        depth = 0;
+        filter = null;
+        setFilter(STATEMENT_START);
+
+        State state = State.STATEMENT;
+        boolean lineStart = true;
+        boolean decorating = false;
+        OutlineNode header = null;
+        OutlineNode opened = null;
+        List<String> decorators = new ArrayList<>();
+
+        while (lexer.next(cursor)) {
+            TokenType type = cursor.getType();
+            switch (type) {
+                case NEWLINE -> {
+                    if (decorating) {
+                        decorators.add(text.toString());
+                    } else {
+                        if (state == State.IMPORT) {
+                            scopes[scopeCount - 1].getChildren().add(new OutlineNode(OutlineNode.Kind.IMPORT,
+                                    text.toString(), cursor.getLine(), List.of()));
+                        }
+                        decorators.clear();
+                    }
+                    decorating = false;
+                    opened = header;
+                    header = null;
+                    text.setLength(0);
+                    state = State.STATEMENT;
+                    lineStart = true;
+                    setFilter(STATEMENT_START);
+                    continue;
+                }
+                case INDENT -> {
+                    pushIndent(cursor.getColumn());
+                    if (opened != null) {
+                        pushScope(opened);
+                    }
+                    opened = null;
+                    lineStart = true;
+                    continue;
+                }
+                case DEDENT -> {
+                    depth--;
+                    while (scopeLevels[scopeCount - 1] > depth) {
+                        scopeCount--;
+                    }
+                    opened = null;
+                    lineStart = true;
+                    continue;
+                }
+            }
+
+            boolean atStatementStart = lineStart && cursor.getColumn() <= indents[depth];
+            lineStart = false;
+            switch (state) {
+                case STATEMENT, ASYNC -> {
+                    if (!atStatementStart && state != State.ASYNC) {
+                        state = State.SKIP;
+                        setFilter(SKIP);
+                    } else if (type == TokenType.DEF || type == TokenType.CLASS) {
+                        header = new OutlineNode(type == TokenType.DEF ? OutlineNode.Kind.FUNCTION
+                                : OutlineNode.Kind.CLASS, "", cursor.getLine(),
+                                decorators.isEmpty() ? List.of() : List.copyOf(decorators));
+                        decorators.clear();
+                        scopes[scopeCount - 1].getChildren().add(header);
+                        state = State.NAME;
+                        setFilter(NAME);
+                    } else if (type == TokenType.ASYNC && state == State.STATEMENT) {
+                        state = State.ASYNC;
+                    } else if (type == TokenType.AT && state == State.STATEMENT) {
+                        decorating = true;
+                        state = State.DECORATOR;
+                        setFilter(DECORATOR);
+                    } else if ((type == TokenType.IMPORT || type == TokenType.FROM) && state == State.STATEMENT
+                            && !insideFunction()) {
+                        text.append(type == TokenType.IMPORT ? "import " : "from ");
+                        state = State.IMPORT;
+                        setFilter(IMPORT);
+                    } else {
+                        state = State.SKIP;
+                        setFilter(SKIP);
+                    }
+                }
+                case NAME -> {
+                    header.setName(cursor.getValue().toString());
+                    state = State.SKIP;
+                    setFilter(SKIP);
+                }
+                case DECORATOR -> {
+                    if (type == TokenType.IDENTIFIER) {
+                        text.append(cursor.getValue());
+                    } else if (type == TokenType.DOT) {
+                        text.append('.');
+                    } else {
+                        state = State.SKIP;
+                        setFilter(SKIP);
+                    }
+                }
+                case IMPORT -> {
+                    switch (type) {
+                        case IDENTIFIER -> text.append(cursor.getValue());
+                        case DOT -> text.append('.');
+                        case COMMA -> text.append(", ");
+                        case AS -> text.append(" as ");
+                        case IMPORT -> text.append(" import ");
+                        case ASTERISK -> text.append('*');
+                    }
+                }
+                case SKIP -> {
+                }
+            }
+        }
+        return root;
+    }
+
+    private boolean insideFunction() {
+        return scopes[scopeCount - 1].getKind() == OutlineNode.Kind.FUNCTION;
+    }
+
+    private void pushIndent(int width) {
+        depth++;
+        if (depth == indents.length) {
+            indents = Arrays.copyOf(indents, depth * 2);
+        }
+        indents[depth] = width;
+    }
+
+    private void pushScope(OutlineNode node) {
+        if (scopeCount == scopes.length) {
+            scopes = Arrays.copyOf(scopes, scopeCount * 2);
+            scopeLevels = Arrays.copyOf(scopeLevels, scopeCount * 2);
+        }
+        scopes[scopeCount] = node;
+        scopeLevels[scopeCount++] = depth;
+    }
+
+    private void setFilter(EnumSet<TokenType> types) {
+        if (filter != types) {
+            filter = types;
+            lexer.setTokenFilter(types);
+        }
+    }
+
+    private static EnumSet<TokenType> with(EnumSet<TokenType> base, TokenType... types) {
+        EnumSet<TokenType> result = EnumSet.copyOf(base);
+        result.addAll(Arrays.asList(types));
+        return result;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: OutlineExtractor <file or root> [--quiet]");
+            System.exit(2);
+        }
+        try {
+            Path root = Paths.get(args[0]);
+            boolean quiet = args.length > 1 && args[1].equals("--quiet");
+            if (Files.isRegularFile(root)) {
+                try (InputStream in = Files.newInputStream(root)) {
+                    StringBuilder out = new StringBuilder();
+                    new OutlineExtractor().extract(root.toString(), in).print(out, 0);
+                    System.out.print(out);
+                }
+                return;
+            }
+
+            List<Path> files = ParallelLexing.findSources(root);
+            long start = System.nanoTime();
+            List<OutlineCollector> collectors = ParallelLexing.process(files, ParallelLexing.defaultThreads(),
+                    OutlineCollector::new, (collector, name, in) -> collector.add(name, in, quiet));
+            long elapsed = System.nanoTime() - start;
+
+            long nodes = 0;
+            for (OutlineCollector collector : collectors) {
+                nodes += collector.nodes;
+                System.out.print(collector.out);
+            }
+            System.err.printf("%d files, %d outline nodes in %d ms%n", files.size(), nodes, elapsed / 1_000_000);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static class OutlineCollector {
+        private final OutlineExtractor extractor = new OutlineExtractor();
+        private final StringBuilder out = new StringBuilder();
+        private long nodes;
+
+        void add(String name, InputStream in, boolean quiet) throws IOException {
+            OutlineNode outline = extractor.extract(name, in);
+            nodes += outline.size();
+            if (!quiet) {
+                outline.print(out, 0);
+            }
+        }
+    }
+}
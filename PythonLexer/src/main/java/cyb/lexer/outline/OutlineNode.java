@@ -0,0 +1,62 @@
+package cyb.lexer.outline;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+public class OutlineNode {
+    public enum Kind {
+        MODULE,
+        IMPORT,
+        CLASS,
+        FUNCTION
+    }
+
+    private final Kind kind;
+    private String name;
+    private final int line;
+    private final List<String> decorators;
+    private final List<OutlineNode> children = new ArrayList<>();
+
+    OutlineNode(Kind kind, String name, int line, List<String> decorators) {
+        this.kind = kind;
+        this.name = name;
+        this.line = line;
+        this.decorators = decorators;
+    }
+
+    void setName(String name) {
+        this.name = name;
+    }
+
+    public int size() {
+        int size = 1;
+        for (OutlineNode child : children) {
+            size += child.size();
+        }
+        return size;
+    }
+
+    public void print(StringBuilder out, int depth) {
+        for (String decorator : decorators) {
+            out.append("  ".repeat(depth)).append('@').append(decorator).append('\n');
+        }
+        out.append("  ".repeat(depth));
+        switch (kind) {
+            case CLASS -> out.append("class ");
+            case FUNCTION -> out.append("def ");
+            default -> {
+            }
+        }
+        out.append(name);
+        if (kind != Kind.MODULE) {
+            out.append("  [").append(line + 1).append(']');
+        }
+        out.append('\n');
+        for (OutlineNode child : children) {
+            child.print(out, depth + 1);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package cyb.lexer.stats;
+
+import cyb.lexer.batch.SymbolTable;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Identifier to count map on top of a {@link SymbolTable}. Keys are only materialized as strings when
+ * they are inserted for the first time, so counting an already known identifier does not allocate.
+ */
+public class IdentifierCounter {
+    private final SymbolTable identifiers = new SymbolTable();
+    private long[] counts = new long[1024];
+
+    public void add(CharSequence identifier) {
+        add(identifier, 1);
+    }
+
+    public void add(CharSequence identifier, long count) {
+        int id = identifiers.intern(0, identifier);
+        if (id == counts.length) {
+            counts = Arrays.copyOf(counts, id * 2);
+        }
+        counts[id] += count;
+    }
+
+    public long get(CharSequence identifier) {
+        int id = identifiers.find(0, identifier);
+        return id < 0 ? 0 : counts[id];
+    }
+
+    public int size() {
+        return identifiers.size();
+    }
+
+    public void merge(IdentifierCounter other) {
+        for (int i = 0; i < other.size(); i++) {
+            add(other.identifiers.getText(i), other.counts[i]);
+        }
+    }
+
+    public void forEach(ObjLongConsumer<String> consumer) {
+        for (int i = 0; i < size(); i++) {
+            consumer.accept(identifiers.getText(i), counts[i]);
+        }
+    }
+
+    /**
+     * Returns the {@code limit} most frequent identifiers, most frequent first.
+     */
+    public Entry[] top(int limit) {
+        Entry[] entries = new Entry[size()];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = new Entry(identifiers.getText(i), counts[i]);
+        }
+        Arrays.sort(entries, (a, b) -> a.count != b.count
+                ? Long.compare(b.count, a.count)
+                : a.identifier.compareTo(b.identifier));
+        return Arrays.copyOf(entries, Math.min(limit, entries.length));
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Entry {
+        private final String identifier;
+        private final long count;
+    }
+}
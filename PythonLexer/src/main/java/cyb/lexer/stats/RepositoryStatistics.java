@@ -0,0 +1,83 @@
+package cyb.lexer.stats;
+
+import cyb.lexer.TokenType;
+import cyb.lexer.batch.ArchiveLexing;
+import cyb.lexer.batch.ParallelLexing;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+public class RepositoryStatistics {
+    private static final int TOP_IDENTIFIERS = 20;
+
+    public static TokenStatistics collect(List<Path> files, int threads) throws IOException {
+        return merge(ParallelLexing.process(files, threads, TokenStatistics::new,
+                (statistics, name, in) -> statistics.addFile(in)));
+    }
+
+    public static TokenStatistics collectArchives(List<Path> archives, int threads) throws IOException {
+        return merge(ArchiveLexing.process(archives, threads, TokenStatistics::new,
+                (statistics, name, in) -> statistics.addFile(in)));
+    }
+
+    private static TokenStatistics merge(List<TokenStatistics> partial) {
+        TokenStatistics total = partial.get(0);
+        for (int i = 1; i < partial.size(); i++) {
+            total.merge(partial.get(i));
+        }
+        return total;
+    }
+
+    public static void report(TokenStatistics statistics, PrintStream out) {
+        out.printf("files: %d%nlines: %d%ntokens: %d%n", statistics.getFiles(), statistics.getLines(),
+                statistics.getTokens());
+
+        out.println();
+        out.println("token types:");
+        for (TokenType type : TokenType.values()) {
+            long count = statistics.getCount(type);
+            if (count > 0) {
+                out.printf("  %-24s %12d%n", type, count);
+            }
+        }
+
+        out.println();
+        out.printf("identifiers (%d distinct):%n", statistics.getIdentifiers().size());
+        for (IdentifierCounter.Entry entry : statistics.getIdentifiers().top(TOP_IDENTIFIERS)) {
+            out.printf("  %-24s %12d%n", entry.getIdentifier(), entry.getCount());
+        }
+
+        out.println();
+        out.println("literal lengths:");
+        out.printf("  %-24s %12s %12s%n", "length", "string", "numeric");
+        long[] strings = statistics.getStringLengthCounts();
+        long[] numbers = statistics.getNumericLengthCounts();
+        for (int i = 0; i < TokenStatistics.LENGTH_BUCKETS; i++) {
+            if (strings[i] > 0 || numbers[i] > 0) {
+                String range = i == 0 ? "0" : (1L << (i - 1)) + ".." + ((1L << i) - 1);
+                out.printf("  %-24s %12d %12d%n", range, strings[i], numbers[i]);
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: RepositoryStatistics <root or archive> [threads]");
+            System.exit(2);
+        }
+        try {
+            int threads = args.length > 1 ? Integer.parseInt(args[1]) : ParallelLexing.defaultThreads();
+            Path root = Paths.get(args[0]);
+            if (ArchiveLexing.isArchive(root)) {
+                report(collectArchives(List.of(root), threads), System.out);
+            } else {
+                report(collect(ParallelLexing.findSources(root), threads), System.out);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
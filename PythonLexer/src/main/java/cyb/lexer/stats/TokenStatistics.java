@@ -0,0 +1,132 @@
+package cyb.lexer.stats;
+
+import cyb.lexer.Lexer;
+import cyb.lexer.TokenCursor;
+import cyb.lexer.TokenType;
+import cyb.lexer.batch.ParallelLexing;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Per-worker token statistics. Instances are not thread-safe: every lexing thread fills its own one and
+ * the results are combined with {@link #merge(TokenStatistics)} once all files have been processed.
+ */
+@Getter
+public class TokenStatistics {
+    private static final TokenType[] TYPES = TokenType.values();
+    static final int LENGTH_BUCKETS = 32;
+
+    private final long[] typeCounts = new long[TYPES.length];
+    private final long[] stringLengthCounts = new long[LENGTH_BUCKETS];
+    private final long[] numericLengthCounts = new long[LENGTH_BUCKETS];
+    private final IdentifierCounter identifiers = new IdentifierCounter();
+    private long files;
+    private long lines;
+    private long tokens;
+    @Getter(AccessLevel.NONE)
+    private final TokenCursor cursor = new TokenCursor();
+    @Getter(AccessLevel.NONE)
+    private final Lexer lexer = ParallelLexing.reusableLexer();
+    @Getter(AccessLevel.NONE)
+    private final LineCountingInputStream counter = new LineCountingInputStream();
+
+    /**
+     * Lexes one file to its end. Lines are counted on the input itself, so trailing blank and comment lines
+     * are included.
+     */
+    public void addFile(InputStream in) throws IOException {
+        files++;
+        counter.reset(in);
+        lexer.reset(counter);
+
+        while (lexer.next(cursor)) {
+            add(cursor.getType(), cursor.getValue());
+        }
+        lines += counter.getLines();
+    }
+
+    public void add(TokenType type, CharSequence value) {
+        tokens++;
+        typeCounts[type.ordinal()]++;
+
+        switch (type) {
+            case IDENTIFIER -> identifiers.add(value);
+            case STRING_LITERAL, BYTES_LITERAL, FORMATTED_STRING_LITERAL ->
+                    stringLengthCounts[lengthBucket(value.length())]++;
+            case INTEGER_LITERAL, FLOATING_POINT_LITERAL, IMAGINARY_LITERAL ->
+                    numericLengthCounts[lengthBucket(value.length())]++;
+        }
+    }
+
+    public void merge(TokenStatistics other) {
+        for (int i = 0; i < typeCounts.length; i++) {
+            typeCounts[i] += other.typeCounts[i];
+        }
+        for (int i = 0; i < LENGTH_BUCKETS; i++) {
+            stringLengthCounts[i] += other.stringLengthCounts[i];
+            numericLengthCounts[i] += other.numericLengthCounts[i];
+        }
+        identifiers.merge(other.identifiers);
+        files += other.files;
+        lines += other.lines;
+        tokens += other.tokens;
+    }
+
+    public long getCount(TokenType type) {
+        return typeCounts[type.ordinal()];
+    }
+
+    // Bucket 0 holds empty values, bucket i holds lengths in [2^(i-1), 2^i).
+    static int lengthBucket(int length) {
+        return Math.min(LENGTH_BUCKETS - 1, 32 - Integer.numberOfLeadingZeros(length));
+    }
+
+    // Counts \n, \r\n and \r line ends plus a last line without one, as Python does.
+    private static class LineCountingInputStream extends FilterInputStream {
+        private long lines;
+        private int last = '\n';
+
+        LineCountingInputStream() {
+            super(InputStream.nullInputStream());
+        }
+
+        void reset(InputStream in) {
+            this.in = in;
+            lines = 0;
+            last = '\n';
+        }
+
+        long getLines() {
+            return last == '\n' || last == '\r' ? lines : lines + 1;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                count(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            for (int i = off; i < off + read; i++) {
+                count(b[i]);
+            }
+            return read;
+        }
+
+        private void count(int b) {
+            if (b == '\r' || b == '\n' && last != '\r') {
+                lines++;
+            }
+            last = b;
+        }
+    }
+}
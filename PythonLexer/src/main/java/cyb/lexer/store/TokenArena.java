@@ -0,0 +1,402 @@
+package cyb.lexer.store;
+
+import cyb.lexer.Lexer;
+import cyb.lexer.TokenCursor;
+import cyb.lexer.TokenType;
+import cyb.lexer.batch.ParallelLexing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token store that keeps the tokens of many files in direct memory, outside of the garbage collected heap.
+ * <p>
+ * Every token is a fixed-width record of {@value #RECORD_SIZE} bytes: line, column, a 48-bit offset into
+ * the shared string area and the token type. Keywords, operators and line structure tokens carry no
+ * string, their value follows from the type. Values of the other tokens are stored once per file in the
+ * string area, prefixed with their length and encoded like CESU-8. Both areas are split into direct
+ * buffer segments, so the store is not limited to 2 GB.
+ * <p>
+ * Files are appended concurrently through {@link Appender}s: a file is lexed into the appender's reusable
+ * staging arrays, then space is reserved in both areas with one atomic add each and the staged bytes are
+ * copied in. The per-file directory stays on the heap as a few parallel arrays. A file's tokens can be
+ * read from any thread once its id has been returned.
+ */
+public class TokenArena {
+    static final int RECORD_SIZE = 16;
+    private static final int SEGMENT_SHIFT = 26;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final long NO_VALUE = (1L << 48) - 1;
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final AtomicLong recordBytes = new AtomicLong();
+    private final AtomicLong stringBytes = new AtomicLong();
+    private volatile ByteBuffer[] records = new ByteBuffer[0];
+    private volatile ByteBuffer[] strings = new ByteBuffer[0];
+
+    private String[] names = new String[64];
+    private long[] firstTokens = new long[64];
+    private int[] tokenCounts = new int[64];
+    private volatile int fileCount;
+
+    public Appender appender() {
+        return new Appender();
+    }
+
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    public String getName(int file) {
+        checkFile(file);
+        return names[file];
+    }
+
+    public int getTokenCount(int file) {
+        checkFile(file);
+        return tokenCounts[file];
+    }
+
+    public long getTotalTokens() {
+        return recordBytes.get() / RECORD_SIZE;
+    }
+
+    public long getStringBytes() {
+        return stringBytes.get();
+    }
+
+    public TokenType getType(int file, int index) {
+        long record = record(file, index);
+        return TYPES[records[segment(record)].get(offset(record) + 14)];
+    }
+
+    public int getLine(int file, int index) {
+        long record = record(file, index);
+        return records[segment(record)].getInt(offset(record));
+    }
+
+    public int getColumn(int file, int index) {
+        long record = record(file, index);
+        return records[segment(record)].getInt(offset(record) + 4);
+    }
+
+    /**
+     * Appends the value of a token to {@code out}.
+     */
+    public void getValue(int file, int index, StringBuilder out) {
+        long record = record(file, index);
+        ByteBuffer segment = records[segment(record)];
+        int offset = offset(record);
+        long value = ((segment.getShort(offset + 8) & 0xFFFFL) << 32) | (segment.getInt(offset + 10) & 0xFFFFFFFFL);
+        if (value == NO_VALUE) {
+            out.append(TYPES[segment.get(offset + 14)].getValue());
+            return;
+        }
+
+        ByteBuffer[] area = strings;
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = area[segment(value)].get(offset(value++));
+            length |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            int b = area[segment(value)].get(offset(value++)) & 0xFF;
+            if (b < 0x80) {
+                out.append((char) b);
+            } else if (b < 0xE0) {
+                out.append((char) (((b & 0x1F) << 6) | (area[segment(value)].get(offset(value++)) & 0x3F)));
+            } else {
+                int second = area[segment(value)].get(offset(value++)) & 0x3F;
+                int third = area[segment(value)].get(offset(value++)) & 0x3F;
+                out.append((char) (((b & 0x0F) << 12) | (second << 6) | third));
+            }
+        }
+    }
+
+    public String getValue(int file, int index) {
+        StringBuilder value = new StringBuilder();
+        getValue(file, index, value);
+        return value.toString();
+    }
+
+    private long record(int file, int index) {
+        checkFile(file);
+        if (index < 0 || index >= tokenCounts[file]) {
+            throw new IndexOutOfBoundsException("Token " + index + " of file " + file + " does not exist.");
+        }
+        return (firstTokens[file] + index) * RECORD_SIZE;
+    }
+
+    private void checkFile(int file) {
+        if (file < 0 || file >= fileCount) {
+            throw new IndexOutOfBoundsException("File " + file + " does not exist.");
+        }
+    }
+
+    private static int segment(long position) {
+        return (int) (position >>> SEGMENT_SHIFT);
+    }
+
+    private static int offset(long position) {
+        return (int) (position & (SEGMENT_SIZE - 1));
+    }
+
+    private synchronized void ensureSegments(long recordEnd, long stringEnd) {
+        records = grow(records, recordEnd);
+        strings = grow(strings, stringEnd);
+    }
+
+    private static ByteBuffer[] grow(ByteBuffer[] segments, long end) {
+        int needed = segment(end + SEGMENT_SIZE - 1);
+        if (needed <= segments.length) {
+            return segments;
+        }
+        ByteBuffer[] grown = Arrays.copyOf(segments, needed);
+        for (int i = segments.length; i < needed; i++) {
+            grown[i] = ByteBuffer.allocateDirect(SEGMENT_SIZE);
+        }
+        return grown;
+    }
+
+    private synchronized int register(String name, long firstToken, int tokenCount) {
+        int file = fileCount;
+        if (file == names.length) {
+            names = Arrays.copyOf(names, file * 2);
+            firstTokens = Arrays.copyOf(firstTokens, file * 2);
+            tokenCounts = Arrays.copyOf(tokenCounts, file * 2);
+        }
+        names[file] = name;
+        firstTokens[file] = firstToken;
+        tokenCounts[file] = tokenCount;
+        fileCount = file + 1;
+        return file;
+    }
+
+    private static void copy(ByteBuffer[] segments, long position, byte[] source, int length) {
+        int copied = 0;
+        while (copied < length) {
+            ByteBuffer target = segments[segment(position)].duplicate();
+            target.position(offset(position));
+            int chunk = Math.min(length - copied, target.remaining());
+            target.put(source, copied, chunk);
+            copied += chunk;
+            position += chunk;
+        }
+    }
+
+    /**
+     * Lexes files into the arena. Every lexing thread needs its own appender.
+     */
+    public class Appender {
+        private final TokenCursor cursor = new TokenCursor();
+        private final Lexer lexer = ParallelLexing.reusableLexer();
+        private byte[] staged = new byte[RECORD_SIZE * 1024];
+        private byte[] stagedStrings = new byte[16 * 1024];
+        private int stringSize;
+        private int[] valueTable = new int[1024];
+        private int[] valueHashes = new int[1024];
+        private int valueCount;
+
+        private Appender() {
+        }
+
+        /**
+         * @return the id of the appended file
+         */
+        public int append(String name, InputStream in) throws IOException {
+            lexer.reset(in);
+            stringSize = 0;
+            valueCount = 0;
+            Arrays.fill(valueTable, -1);
+
+            int tokens = 0;
+            while (lexer.next(cursor)) {
+                if ((tokens + 1) * RECORD_SIZE > staged.length) {
+                    staged = Arrays.copyOf(staged, staged.length * 2);
+                }
+                TokenType type = cursor.getType();
+                long value = type.getValue().isEmpty() && cursor.getValue().length() > 0 ? stage(cursor.getValue())
+                        : NO_VALUE;
+                int record = tokens++ * RECORD_SIZE;
+                putInt(record, cursor.getLine());
+                putInt(record + 4, cursor.getColumn());
+                staged[record + 8] = (byte) (value >>> 40);
+                staged[record + 9] = (byte) (value >>> 32);
+                putInt(record + 10, (int) value);
+                staged[record + 14] = (byte) type.ordinal();
+                staged[record + 15] = 0;
+            }
+
+            long recordStart = recordBytes.getAndAdd((long) tokens * RECORD_SIZE);
+            long stringStart = stringBytes.getAndAdd(stringSize);
+            for (int i = 0; i < tokens; i++) {
+                int record = i * RECORD_SIZE;
+                long value = ((staged[record + 8] & 0xFFL) << 40) | ((staged[record + 9] & 0xFFL) << 32)
+                        | (getInt(record + 10) & 0xFFFFFFFFL);
+                if (value != NO_VALUE) {
+                    value += stringStart;
+                    staged[record + 8] = (byte) (value >>> 40);
+                    staged[record + 9] = (byte) (value >>> 32);
+                    putInt(record + 10, (int) value);
+                }
+            }
+            ensureSegments(recordStart + (long) tokens * RECORD_SIZE, stringStart + stringSize);
+            copy(records, recordStart, staged, tokens * RECORD_SIZE);
+            copy(strings, stringStart, stagedStrings, stringSize);
+            return register(name, recordStart / RECORD_SIZE, tokens);
+        }
+
+        // Values repeated within a file, mostly identifiers, are stored once. The table keeps the staged start
+        // of each distinct value next to its hash, so neither lookups nor rehashing materialize a string.
+        private long stage(CharSequence value) {
+            int hash = hash(value);
+            int mask = valueTable.length - 1;
+            int slot = hash & mask;
+            for (; valueTable[slot] >= 0; slot = (slot + 1) & mask) {
+                if (valueHashes[slot] == hash && stagedEquals(valueTable[slot], value)) {
+                    return valueTable[slot];
+                }
+            }
+
+            int start = stringSize;
+            ensureStringCapacity(5 + value.length() * 3);
+            for (int length = value.length(); ; length >>>= 7) {
+                if (length < 0x80) {
+                    stagedStrings[stringSize++] = (byte) length;
+                    break;
+                }
+                stagedStrings[stringSize++] = (byte) (length | 0x80);
+            }
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    stagedStrings[stringSize++] = (byte) c;
+                } else if (c < 0x800) {
+                    stagedStrings[stringSize++] = (byte) (0xC0 | (c >> 6));
+                    stagedStrings[stringSize++] = (byte) (0x80 | (c & 0x3F));
+                } else {
+                    stagedStrings[stringSize++] = (byte) (0xE0 | (c >> 12));
+                    stagedStrings[stringSize++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    stagedStrings[stringSize++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+
+            valueTable[slot] = start;
+            valueHashes[slot] = hash;
+            if (++valueCount * 2 > valueTable.length) {
+                rehash();
+            }
+            return start;
+        }
+
+        private boolean stagedEquals(int start, CharSequence value) {
+            int length = 0;
+            int position = start;
+            for (int shift = 0; ; shift += 7) {
+                byte b = stagedStrings[position++];
+                length |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            if (length != value.length()) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                int b = stagedStrings[position++] & 0xFF;
+                int c;
+                if (b < 0x80) {
+                    c = b;
+                } else if (b < 0xE0) {
+                    c = ((b & 0x1F) << 6) | (stagedStrings[position++] & 0x3F);
+                } else {
+                    c = ((b & 0x0F) << 12) | ((stagedStrings[position++] & 0x3F) << 6)
+                            | (stagedStrings[position++] & 0x3F);
+                }
+                if (c != value.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void rehash() {
+            int[] oldTable = valueTable;
+            int[] oldHashes = valueHashes;
+            valueTable = new int[oldTable.length * 2];
+            valueHashes = new int[oldTable.length * 2];
+            Arrays.fill(valueTable, -1);
+            int mask = valueTable.length - 1;
+            for (int i = 0; i < oldTable.length; i++) {
+                if (oldTable[i] >= 0) {
+                    int slot = oldHashes[i] & mask;
+                    while (valueTable[slot] >= 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    valueTable[slot] = oldTable[i];
+                    valueHashes[slot] = oldHashes[i];
+                }
+            }
+        }
+
+        private int hash(CharSequence value) {
+            int hash = 0;
+            for (int i = 0; i < value.length(); i++) {
+                hash = 31 * hash + value.charAt(i);
+            }
+            return hash ^ (hash >>> 16);
+        }
+
+        private void ensureStringCapacity(int extra) {
+            if (stringSize + extra > stagedStrings.length) {
+                stagedStrings = Arrays.copyOf(stagedStrings, Math.max(stagedStrings.length * 2, stringSize + extra));
+            }
+        }
+
+        private void putInt(int position, int value) {
+            staged[position] = (byte) (value >>> 24);
+            staged[position + 1] = (byte) (value >>> 16);
+            staged[position + 2] = (byte) (value >>> 8);
+            staged[position + 3] = (byte) value;
+        }
+
+        private int getInt(int position) {
+            return ((staged[position] & 0xFF) << 24) | ((staged[position + 1] & 0xFF) << 16)
+                    | ((staged[position + 2] & 0xFF) << 8) | (staged[position + 3] & 0xFF);
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: TokenArena <root> [threads]");
+            System.exit(2);
+        }
+        try {
+            int threads = args.length > 1 ? Integer.parseInt(args[1]) : ParallelLexing.defaultThreads();
+            List<Path> files = ParallelLexing.findSources(Paths.get(args[0]));
+            TokenArena arena = new TokenArena();
+
+            long start = System.nanoTime();
+            ParallelLexing.process(files, threads, arena::appender, (appender, name, in) -> appender.append(name, in));
+            long elapsed = System.nanoTime() - start;
+
+            Runtime runtime = Runtime.getRuntime();
+            System.out.printf("%d files, %d tokens in %d ms%n", arena.getFileCount(), arena.getTotalTokens(),
+                    elapsed / 1_000_000);
+            System.out.printf("off-heap: %d MB of records, %d MB of strings; heap used: %d MB%n",
+                    arena.getTotalTokens() * RECORD_SIZE >> 20, arena.getStringBytes() >> 20,
+                    (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
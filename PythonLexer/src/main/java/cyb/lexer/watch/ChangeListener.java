@@ -0,0 +1,11 @@
+package cyb.lexer.watch;
+
+import java.util.List;
+
+@FunctionalInterface
+public interface ChangeListener {
+    /**
+     * Called once per debounced burst of file system events, after all affected files have been lexed.
+     */
+    void changed(List<SourceChange> changes);
+}
@@ -0,0 +1,25 @@
+package cyb.lexer.watch;
+
+import cyb.lexer.Token;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class SourceChange {
+    public enum Kind {
+        CREATED,
+        MODIFIED,
+        DELETED
+    }
+
+    private final Kind kind;
+    private final Path file;
+    /**
+     * The new token stream of the file, empty when it was deleted.
+     */
+    private final List<Token> tokens;
+}
@@ -0,0 +1,294 @@
+package cyb.lexer.watch;
+
+import cyb.lexer.Lexer;
+import cyb.lexer.Token;
+import cyb.lexer.batch.ParallelLexing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Keeps the token streams of all sources below a directory up to date. The tree is lexed once by
+ * {@link #start()}; {@link #run(ChangeListener)} then waits for file system events, lets a burst of them
+ * settle until no event arrived for the quiet period (or for at most ten quiet periods in total), and lexes
+ * only the files touched by the burst on a fixed pool of workers. A file that got an event is always lexed
+ * again, as a same-size edit within one timestamp tick leaves its attributes unchanged. After an event
+ * overflow the whole tree is rescanned, and there only files whose size or modification time differ from
+ * the cached stream are lexed again.
+ */
+public class SourceWatcher implements Closeable {
+    private static final long DEFAULT_QUIET_PERIOD_MILLIS = 200;
+    private static final int MAX_QUIET_PERIODS = 10;
+
+    private final Path root;
+    private final int threads;
+    private final long quietPeriodMillis;
+    private final WatchService watchService;
+    private final ExecutorService executor;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final Map<Path, CachedFile> files = new ConcurrentHashMap<>();
+
+    public SourceWatcher(Path root, int threads, long quietPeriodMillis) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive.");
+        }
+        this.root = root;
+        this.threads = threads;
+        this.quietPeriodMillis = quietPeriodMillis;
+        watchService = root.getFileSystem().newWatchService();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "source-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts watching the tree and lexes all of its sources.
+     *
+     * @return the number of lexed files
+     */
+    public int start() throws IOException {
+        List<Path> sources = registerTree(root);
+        lex(sources);
+        return sources.size();
+    }
+
+    /**
+     * Processes file system events until the watcher is closed or the thread is interrupted.
+     */
+    public void run(ChangeListener listener) throws IOException, InterruptedException {
+        while (true) {
+            Set<Path> dirty = new LinkedHashSet<>();
+            boolean overflow;
+            try {
+                overflow = collect(watchService.take(), dirty);
+                long deadline = System.nanoTime()
+                        + TimeUnit.MILLISECONDS.toNanos(quietPeriodMillis * MAX_QUIET_PERIODS);
+                WatchKey key;
+                while (System.nanoTime() < deadline
+                        && (key = watchService.poll(quietPeriodMillis, TimeUnit.MILLISECONDS)) != null) {
+                    overflow |= collect(key, dirty);
+                }
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+            Set<Path> rescanned = new LinkedHashSet<>();
+            if (overflow) {
+                rescanned.addAll(files.keySet());
+                rescanned.addAll(registerTree(root));
+                rescanned.removeAll(dirty);
+            }
+
+            List<SourceChange> changes = update(dirty, rescanned);
+            if (!changes.isEmpty()) {
+                listener.changed(changes);
+            }
+        }
+    }
+
+    /**
+     * @return the cached token stream of a source, or null if it is not below the watched directory
+     */
+    public List<Token> getTokens(Path file) {
+        CachedFile cached = files.get(file);
+        return cached == null ? null : cached.tokens;
+    }
+
+    public int getFileCount() {
+        return files.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        watchService.close();
+    }
+
+    //=====PROCESSING EVENTS=====
+
+    private boolean collect(WatchKey key, Set<Path> dirty) throws IOException {
+        Path directory = directories.get(key);
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW || directory == null) {
+                overflow = true;
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                dirty.addAll(registerTree(path));
+            } else if (ParallelLexing.isSource(path.getFileName().toString())) {
+                dirty.add(path);
+            } else if (event.kind() == ENTRY_DELETE) {
+                for (Path file : files.keySet()) {
+                    if (file.startsWith(path)) {
+                        dirty.add(file);
+                    }
+                }
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+        return overflow;
+    }
+
+    // Registers every directory of the tree and returns its sources. Files created before the registration
+    // of a new directory are picked up here, as no event is delivered for them.
+    private List<Path> registerTree(Path start) throws IOException {
+        try {
+            return ParallelLexing.findSources(start, directory -> directories.put(
+                    directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), directory));
+        } catch (NoSuchFileException e) {
+            // Deleted again before it could be registered.
+            return List.of();
+        }
+    }
+
+    //=====PROCESSING FILES=====
+
+    // Touched files got an event and are lexed unconditionally; rescanned files only when their attributes changed.
+    private List<SourceChange> update(Collection<Path> touched, Collection<Path> rescanned) throws IOException {
+        List<SourceChange> changes = new ArrayList<>();
+        List<Path> modified = new ArrayList<>();
+        for (Path file : touched) {
+            if (!removeIfDeleted(file, changes)) {
+                modified.add(file);
+            }
+        }
+        for (Path file : rescanned) {
+            if (!removeIfDeleted(file, changes)) {
+                CachedFile cached = files.get(file);
+                if (cached == null || !cached.isCurrent(file)) {
+                    modified.add(file);
+                }
+            }
+        }
+        changes.addAll(lex(modified));
+        return changes;
+    }
+
+    private boolean removeIfDeleted(Path file, List<SourceChange> changes) {
+        if (Files.isRegularFile(file)) {
+            return false;
+        }
+        if (files.remove(file) != null) {
+            changes.add(new SourceChange(SourceChange.Kind.DELETED, file, List.of()));
+        }
+        return true;
+    }
+
+    private List<SourceChange> lex(List<Path> sources) throws IOException {
+        if (sources.isEmpty()) {
+            return List.of();
+        }
+        SourceChange[] changes = new SourceChange[sources.size()];
+        ParallelLexing.process(executor, threads, sources.size(), ParallelLexing::reusableLexer,
+                (lexer, index) -> changes[index] = lexFile(lexer, sources.get(index)));
+
+        List<SourceChange> result = new ArrayList<>(changes.length);
+        for (SourceChange change : changes) {
+            if (change != null) {
+                result.add(change);
+            }
+        }
+        return result;
+    }
+
+    private SourceChange lexFile(Lexer lexer, Path file) throws IOException {
+        BasicFileAttributes attributes;
+        List<Token> tokens;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            try (InputStream in = Files.newInputStream(file)) {
+                lexer.reset(in);
+                tokens = Collections.unmodifiableList(lexer.analyze());
+            }
+        } catch (NoSuchFileException e) {
+            return files.remove(file) == null ? null
+                    : new SourceChange(SourceChange.Kind.DELETED, file, List.of());
+        }
+        CachedFile previous = files.put(file,
+                new CachedFile(attributes.size(), attributes.lastModifiedTime().toMillis(), tokens));
+        return new SourceChange(previous == null ? SourceChange.Kind.CREATED : SourceChange.Kind.MODIFIED,
+                file, tokens);
+    }
+
+    private static class CachedFile {
+        private final long size;
+        private final long lastModified;
+        private final List<Token> tokens;
+
+        CachedFile(long size, long lastModified, List<Token> tokens) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.tokens = tokens;
+        }
+
+        boolean isCurrent(Path file) throws IOException {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                return attributes.size() == size && attributes.lastModifiedTime().toMillis() == lastModified;
+            } catch (NoSuchFileException e) {
+                return false;
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: SourceWatcher <root> [--quiet-period=<ms>]");
+            System.exit(2);
+        }
+        long quietPeriod = DEFAULT_QUIET_PERIOD_MILLIS;
+        if (args.length > 1 && args[1].startsWith("--quiet-period=")) {
+            quietPeriod = Long.parseLong(args[1].substring("--quiet-period=".length()));
+        }
+
+        try (SourceWatcher watcher = new SourceWatcher(Paths.get(args[0]), ParallelLexing.defaultThreads(),
+                quietPeriod)) {
+            long start = System.nanoTime();
+            int count = watcher.start();
+            System.err.printf("Watching %d files, lexed in %d ms%n", count, (System.nanoTime() - start) / 1_000_000);
+            watcher.run(changes -> {
+                for (SourceChange change : changes) {
+                    System.out.println(change.getKind() + "\t" + change.getFile() + "\t" + change.getTokens().size());
+                }
+                System.out.flush();
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
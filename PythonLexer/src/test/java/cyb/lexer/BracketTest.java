@@ -0,0 +1,85 @@
+package cyb.lexer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Covers implicit line joining inside brackets and the errors for brackets that are not balanced.
+ */
+class BracketTest {
+    @Test
+    void unmatchedClosingBracketIsAnError() throws IOException {
+        assertEquals(List.of("IDENTIFIER x 0:0", "ASSIGN = 0:2", "ERROR Unmatched closing bracket. 0:4", "NEWLINE  0:5",
+                        "IDENTIFIER y 1:0", "NEWLINE  1:1"),
+                lex("x = )\ny\n"));
+        assertEquals(List.of("ERROR Unmatched closing bracket. 0:0", "NEWLINE  0:1", "IDENTIFIER x 1:0", "NEWLINE  1:1"),
+                lex("]\nx\n"));
+    }
+
+    @Test
+    void mismatchedClosingBracketIsAnErrorAndClosesTheInnermostBracket() throws IOException {
+        assertEquals(List.of("IDENTIFIER f 0:0", "LEFT_PARENTHESIS ( 0:1", "IDENTIFIER a 0:2",
+                        "ERROR Closing bracket does not match the opening one. 0:3", "NEWLINE  0:4",
+                        "IDENTIFIER x 1:0", "NEWLINE  1:1"),
+                lex("f(a]\nx\n"));
+    }
+
+    @Test
+    void bracketOpenAtEndOfInputIsAnError() throws IOException {
+        List<String> expected = List.of("IDENTIFIER f 0:0", "LEFT_PARENTHESIS ( 0:1", "IDENTIFIER a 0:2",
+                "COMMA , 0:3", "LEFT_SQUARE_BRACKET [ 1:2", "IDENTIFIER b 1:3", "ERROR Unclosed bracket. 0:1",
+                "NEWLINE  2:0");
+        assertEquals(expected, lex("f(a,\n  [b\n"));
+        assertEquals(expected, lex("f(a,\n  [b"));
+    }
+
+    @Test
+    void commentsInsideBracketsDoNotEndTheLine() throws IOException {
+        assertEquals(List.of("IDENTIFIER x 0:0", "ASSIGN = 0:2", "LEFT_SQUARE_BRACKET [ 0:4", "INTEGER_LITERAL 1 0:5",
+                        "COMMA , 0:6", "INTEGER_LITERAL 2 2:4", "RIGHT_SQUARE_BRACKET ] 3:0", "NEWLINE  3:1",
+                        "IDENTIFIER y 4:0", "NEWLINE  4:1"),
+                lex("x = [1,  # one ] )\n\n    2  # two\n]\ny\n"));
+    }
+
+    @Test
+    void continuationLinesDoNotChangeTheIndentation() throws IOException {
+        assertEquals(List.of("IF", "IDENTIFIER", "COLON", "NEWLINE", "INDENT", "IDENTIFIER", "LEFT_PARENTHESIS",
+                        "IDENTIFIER", "COMMA", "IDENTIFIER", "RIGHT_PARENTHESIS", "NEWLINE", "IDENTIFIER", "NEWLINE",
+                        "DEDENT", "IDENTIFIER", "NEWLINE"),
+                types("if x:\n    f(a,\nb)\n    g\nh\n"));
+    }
+
+    @Test
+    void dedentFollowsMultiLineBracket() throws IOException {
+        List<String> tokens = lex("def f():\n    return [\n        1,\n    ]\ng()\n");
+        assertEquals(List.of("RIGHT_SQUARE_BRACKET ] 3:4", "NEWLINE  3:5", "DEDENT  4:4", "IDENTIFIER g 4:0"),
+                tokens.subList(11, 15));
+    }
+
+    private static List<String> lex(String source) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        for (Token token : lexer(source).analyze()) {
+            tokens.add(token.getType() + " " + token.getValue() + " " + token.getLine() + ":" + token.getColumn());
+        }
+        return tokens;
+    }
+
+    private static List<String> types(String source) throws IOException {
+        List<String> types = new ArrayList<>();
+        for (Token token : lexer(source).analyze()) {
+            types.add(token.getType().toString());
+        }
+        return types;
+    }
+
+    private static Lexer lexer(String source) {
+        return new Lexer(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,69 @@
+package cyb.lexer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures how many bytes the steady-state cursor loop allocates per megabyte of input, so allocation
+ * regressions fail the build.
+ */
+class LexerAllocationTest {
+    private static final String INPUT = "/main2.py";
+    private static final long BUDGET = 1024;
+    private static final int INPUT_SIZE = 1 << 20;
+    private static final int WARM_UP_RUNS = 30;
+    private static final int MEASURED_RUNS = 10;
+
+    @Test
+    void cursorLoopStaysWithinAllocationBudget() throws IOException {
+        byte[] sample;
+        try (InputStream resource = LexerAllocationTest.class.getResourceAsStream(INPUT)) {
+            assertNotNull(resource, INPUT + " is missing from the classpath.");
+            sample = resource.readAllBytes();
+        }
+
+        ByteArrayOutputStream repeated = new ByteArrayOutputStream(INPUT_SIZE + sample.length);
+        while (repeated.size() < INPUT_SIZE) {
+            repeated.write(sample);
+            repeated.write('\n');
+        }
+        byte[] input = repeated.toByteArray();
+        double megabytes = input.length / (double) (1 << 20);
+
+        ByteArrayInputStream in = new ByteArrayInputStream(input);
+        Lexer lexer = new Lexer(in);
+        lexer.setLiteralValues(true);
+        TokenCursor cursor = new TokenCursor();
+
+        for (int i = 0; i < WARM_UP_RUNS; i++) {
+            lex(lexer, in, cursor);
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            lex(lexer, in, cursor);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        long bytesPerMegabyte = Math.round(allocated / (MEASURED_RUNS * megabytes));
+        assertTrue(bytesPerMegabyte <= BUDGET,
+                bytesPerMegabyte + " bytes allocated per MB of input, the budget is " + BUDGET + ".");
+    }
+
+    private static void lex(Lexer lexer, ByteArrayInputStream in, TokenCursor cursor) throws IOException {
+        in.reset();
+        lexer.reset(in);
+        while (lexer.next(cursor)) {
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package cyb.lexer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Covers the numeric automaton and the literal values computed by {@link NumericLiterals}.
+ */
+class NumericLiteralTest {
+    private static final String UNDERSCORE_ERROR = "ERROR Underscore in numeric literal must be followed by a digit.";
+    private static final String ZERO_PREFIX_ERROR = "ERROR Integer literal cannot start with 0.";
+
+    @Test
+    void underscoresSeparateDigits() throws IOException {
+        assertEquals(List.of("INTEGER_LITERAL 1_000", "FLOATING_POINT_LITERAL 1_0.0_1e1_0", "INTEGER_LITERAL 0x_f_f",
+                "NEWLINE"), lex("1_000 1_0.0_1e1_0 0x_f_f"));
+        assertEquals(1000, integer("1_000"));
+        assertEquals(255, integer("0x_f_f"));
+        assertEquals(10.01e10, number("1_0.0_1e1_0"));
+    }
+
+    @Test
+    void malformedUnderscoresMakeOneErrorOfTheWholeLiteral() throws IOException {
+        assertEquals(List.of(UNDERSCORE_ERROR, "NEWLINE"), lex("1__0"));
+        assertEquals(List.of(UNDERSCORE_ERROR, "PLUS +", "INTEGER_LITERAL 2", "NEWLINE"), lex("1_+2"));
+        assertEquals(List.of("LEFT_PARENTHESIS (", UNDERSCORE_ERROR, "RIGHT_PARENTHESIS )", "NEWLINE"), lex("(0x1_g_)"));
+        assertEquals(List.of(UNDERSCORE_ERROR, "IDENTIFIER x", "NEWLINE"), lex("1.5_ x"));
+    }
+
+    @Test
+    void incompleteExponentIsRolledBack() throws IOException {
+        assertEquals(List.of("INTEGER_LITERAL 1", "IDENTIFIER e", "PLUS +", "IDENTIFIER x", "NEWLINE"), lex("1e+x"));
+        assertEquals(List.of("FLOATING_POINT_LITERAL 1.5", "IDENTIFIER e", "MINUS -", "IDENTIFIER x", "NEWLINE"),
+                lex("1.5e-x"));
+        assertEquals(List.of("INTEGER_LITERAL 2", "ELSE else", "INTEGER_LITERAL 3", "NEWLINE"),
+                lex("2else 3"));
+        assertEquals(List.of("INTEGER_LITERAL 0", "IDENTIFIER x", "NEWLINE"), lex("0x"));
+    }
+
+    @Test
+    void radixIntegersHaveTheirValue() throws IOException {
+        assertEquals(0xCAFE, integer("0xCAFE"));
+        assertEquals(0x7fffffffffffffffL, integer("0X7FFF_FFFF_FFFF_FFFF"));
+        assertEquals(0755, integer("0o755"));
+        assertEquals(0b1011, integer("0B1011"));
+        assertEquals(0, integer("0b0"));
+        assertEquals(List.of("INTEGER_LITERAL 0o7", "INTEGER_LITERAL 8", "NEWLINE"), lex("0o78"));
+    }
+
+    @Test
+    void integersThatOverflowLongBecomeBigIntegers() throws IOException {
+        NumericToken max = numeric("9223372036854775807");
+        assertFalse(max.isBigInteger());
+        assertEquals(Long.MAX_VALUE, max.getLongValue());
+
+        NumericToken overflow = numeric("9_223_372_036_854_775_808");
+        assertTrue(overflow.isBigInteger());
+        assertEquals(BigInteger.ONE.shiftLeft(63), overflow.getBigIntegerValue());
+        assertEquals(new BigInteger("ffffffffffffffffffff", 16), numeric("0xFFFF_FFFF_FFFF_FFFF_FFFF").getBigIntegerValue());
+        assertEquals(BigInteger.ONE.shiftLeft(64), numeric("0o2_000_000_000_000_000_000_000").getBigIntegerValue());
+    }
+
+    @Test
+    void floatsHaveTheValueOfDoubleParsing() throws IOException {
+        for (String literal : List.of("0.1", "1.5e-3", "123456789.123456789", "9007199254740993.0", "4.9e-324",
+                "1.7976931348623157e308", "1e22", "1e23", "0e0", "00.5")) {
+            assertEquals(Double.parseDouble(literal), number(literal), literal);
+        }
+        assertEquals(Double.POSITIVE_INFINITY, number("1e400"));
+        assertEquals(0.0, number("1e-400"));
+        assertEquals(2.5, number("2.5j"));
+        assertEquals("IMAGINARY_LITERAL", numeric("10j").getType().toString());
+    }
+
+    @Test
+    void decimalIntegersCannotHaveLeadingZeros() throws IOException {
+        assertEquals(List.of(ZERO_PREFIX_ERROR, "NEWLINE"), lex("007"));
+        assertEquals(List.of(ZERO_PREFIX_ERROR, "PLUS +", "INTEGER_LITERAL 1", "NEWLINE"), lex("01+1"));
+        assertEquals(List.of(ZERO_PREFIX_ERROR, "IDENTIFIER e", "NEWLINE"), lex("07e"));
+        assertEquals(List.of("INTEGER_LITERAL 000", "INTEGER_LITERAL 0_0", "FLOATING_POINT_LITERAL 007.5",
+                "FLOATING_POINT_LITERAL 007e1", "IMAGINARY_LITERAL 007j", "NEWLINE"), lex("000 0_0 007.5 007e1 007j"));
+        assertEquals(70.0, number("007e1"));
+    }
+
+    private static List<String> lex(String source) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        for (Token token : lexer(source).analyze()) {
+            tokens.add(token.getType() == TokenType.NEWLINE ? "NEWLINE" : token.getType() + " " + token.getValue());
+        }
+        return tokens;
+    }
+
+    private static NumericToken numeric(String literal) throws IOException {
+        List<Token> tokens = lexer(literal).analyze();
+        assertEquals(2, tokens.size(), literal + " is not one token.");
+        return assertInstanceOf(NumericToken.class, tokens.get(0));
+    }
+
+    private static long integer(String literal) throws IOException {
+        NumericToken token = numeric(literal);
+        assertEquals(TokenType.INTEGER_LITERAL, token.getType());
+        return token.getLongValue();
+    }
+
+    private static double number(String literal) throws IOException {
+        return numeric(literal).getDoubleValue();
+    }
+
+    private static Lexer lexer(String source) {
+        Lexer lexer = new Lexer(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)));
+        lexer.setLiteralValues(true);
+        return lexer;
+    }
+}
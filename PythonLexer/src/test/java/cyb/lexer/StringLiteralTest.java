@@ -0,0 +1,142 @@
+package cyb.lexer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Covers the string automaton: prefixes, escape sequences of str and bytes literals, raw strings and the
+ * replacement fields of formatted strings.
+ */
+class StringLiteralTest {
+    @Test
+    void prefixesSelectTheLiteralType() throws IOException {
+        assertEquals(List.of("STRING_LITERAL a", "STRING_LITERAL a", "STRING_LITERAL a", "BYTES_LITERAL a",
+                        "BYTES_LITERAL a", "BYTES_LITERAL a", "FORMATTED_STRING_LITERAL a",
+                        "FORMATTED_STRING_LITERAL a", "NEWLINE"),
+                lex("'a' u'a' R'a' b'a' rb'a' Br'a' f'a' fR'a'"));
+    }
+
+    @Test
+    void invalidPrefixesAreIdentifiers() throws IOException {
+        assertEquals(List.of("IDENTIFIER ub", "STRING_LITERAL a", "IDENTIFIER bf", "STRING_LITERAL a",
+                        "IDENTIFIER rr", "STRING_LITERAL a", "NEWLINE"),
+                lex("ub'a' bf'a' rr'a'"));
+    }
+
+    @Test
+    void strLiteralsDecodeAllEscapes() throws IOException {
+        assertEquals(List.of("STRING_LITERAL \t\n\\'\"\u0007", "NEWLINE"), lex("'\\t\\n\\\\\\'\\\"\\a'"));
+        assertEquals(List.of("STRING_LITERAL A\u00e9\u20ac\ud83d\ude00", "NEWLINE"),
+                lex("'\\x41\\u00e9\\N{EURO SIGN}\\U0001F600'"));
+        assertEquals(List.of("STRING_LITERAL \u0007\u0000" + "8\u00ff1", "NEWLINE"), lex("'\\7\\08\\3771'"));
+    }
+
+    @Test
+    void unknownAndIncompleteEscapesAreKeptAsWritten() throws IOException {
+        assertEquals(List.of("STRING_LITERAL \\d\\xg\\N{NO SUCH NAME}", "NEWLINE"),
+                lex("'\\d\\xg\\N{NO SUCH NAME}'"));
+    }
+
+    @Test
+    void bytesLiteralsOnlyDecodeByteEscapes() throws IOException {
+        assertEquals(List.of("BYTES_LITERAL A\n\u00ff\\u0041\\U00000041\\N{EURO SIGN}", "NEWLINE"),
+                lex("b'\\x41\\n\\377\\u0041\\U00000041\\N{EURO SIGN}'"));
+    }
+
+    @Test
+    void rawStringsKeepBackslashes() throws IOException {
+        assertEquals(List.of("STRING_LITERAL \\n\\'\\x41", "BYTES_LITERAL \\\\", "NEWLINE"),
+                lex("r'\\n\\'\\x41' rb'\\\\'"));
+        assertEquals(List.of("STRING_LITERAL a\\\nb", "NEWLINE"), lex("r'a\\\nb'"));
+    }
+
+    @Test
+    void lineContinuationInsideStringIsDropped() throws IOException {
+        assertEquals(List.of("STRING_LITERAL ab", "IDENTIFIER x", "NEWLINE"), lex("'a\\\nb' x"));
+    }
+
+    @Test
+    void doubledBracesDoNotOpenReplacementFields() throws IOException {
+        assertEquals(List.of("FORMATTED_STRING_LITERAL {{'}}", "IDENTIFIER x", "NEWLINE"), lex("f\"{{'}}\" x"));
+        assertEquals(List.of("STRING_LITERAL {'", "IDENTIFIER x", "NEWLINE"), lex("\"{'\" x"));
+    }
+
+    @Test
+    void replacementFieldsMayHoldQuotesAndBrackets() throws IOException {
+        assertEquals(List.of("FORMATTED_STRING_LITERAL {d['}\"']}", "IDENTIFIER x", "NEWLINE"),
+                lex("f\"{d['}\"']}\" x"));
+        assertEquals(List.of("FORMATTED_STRING_LITERAL {f(a[0], {1: 2})}", "NEWLINE"),
+                lex("f'{f(a[0], {1: 2})}'"));
+    }
+
+    @Test
+    void nestedFormatSpecsAreClosedByTheirOwnBraces() throws IOException {
+        assertEquals(List.of("FORMATTED_STRING_LITERAL {x:{y}}", "IDENTIFIER z", "NEWLINE"), lex("f\"{x:{y}}\" z"));
+        assertEquals(List.of("FORMATTED_STRING_LITERAL {x!r:>{w}.{p}}!", "NEWLINE"), lex("f'{x!r:>{w}.{p}}!'"));
+        assertEquals(List.of("FORMATTED_STRING_LITERAL {x:'>10}", "NEWLINE"), lex("f\"{x:'>10}\""));
+    }
+
+    @Test
+    void tripleQuotedFormattedStringsSpanLines() throws IOException {
+        assertEquals(List.of("FORMATTED_STRING_LITERAL a\n{x:\n{y}}\"\"\"", "IDENTIFIER z", "NEWLINE"),
+                lex("f\"\"\"a\n{x:\n{y}}\"\"\\\"\"\"\" z"));
+    }
+
+    @Test
+    void unterminatedStringsAreErrors() throws IOException {
+        assertEquals(List.of("ERROR Missing closing single quote.", "NEWLINE", "IDENTIFIER x", "NEWLINE"),
+                lex("'abc\nx"));
+        assertEquals(List.of("ERROR Missing closing double quote.", "NEWLINE", "IDENTIFIER x", "NEWLINE"),
+                lex("f\"{a\nx"));
+        assertEquals(List.of("ERROR Missing closing triple quote.", "NEWLINE"), lex("'''abc\n"));
+        assertEquals(List.of("ERROR Missing closing triple quote.", "NEWLINE"), lex("'''abc"));
+    }
+
+    @Test
+    void escapesAreSkippedLikeCapturedOnesWhenStringsAreFilteredOut() throws IOException {
+        String source = "'\\N{EURO SIGN}\\x41\\101\\u0041\\\n' b'\\N{x}' f'{x:{y}}\\{z}' r'\\'' x\n";
+        Set<TokenType> withoutStrings = EnumSet.allOf(TokenType.class);
+        withoutStrings.removeAll(EnumSet.of(TokenType.STRING_LITERAL, TokenType.BYTES_LITERAL,
+                TokenType.FORMATTED_STRING_LITERAL));
+
+        List<String> expected = new ArrayList<>();
+        for (Token token : lex(source, EnumSet.allOf(TokenType.class))) {
+            if (withoutStrings.contains(token.getType())) {
+                expected.add(describe(token));
+            }
+        }
+        List<String> filtered = new ArrayList<>();
+        for (Token token : lex(source, withoutStrings)) {
+            filtered.add(describe(token));
+        }
+        assertEquals(List.of("IDENTIFIER x 1:32", "NEWLINE  1:33"), expected);
+        assertEquals(expected, filtered);
+    }
+
+    private static List<String> lex(String source) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        for (Token token : lex(source, EnumSet.allOf(TokenType.class))) {
+            tokens.add(token.getType() == TokenType.NEWLINE ? "NEWLINE" : token.getType() + " " + token.getValue());
+        }
+        return tokens;
+    }
+
+    private static List<Token> lex(String source, Set<TokenType> types) throws IOException {
+        Lexer lexer = new Lexer(new ByteArrayInputStream(source.getBytes(StandardCharsets.ISO_8859_1)));
+        lexer.setTokenFilter(types);
+        return lexer.analyze();
+    }
+
+    private static String describe(Token token) {
+        return token.getType() + " " + token.getValue() + " " + token.getLine() + ":" + token.getColumn();
+    }
+}
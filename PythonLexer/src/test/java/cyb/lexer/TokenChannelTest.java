@@ -0,0 +1,104 @@
+package cyb.lexer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TokenChannelTest {
+    @Test
+    void peekingPastTheCapacityWithoutMarkThrows() throws IOException {
+        TokenChannel channel = channel(identifiers(40), 4);
+        assertEquals("a3", channel.peek(3).getValue().toString());
+        assertThrows(IllegalStateException.class, () -> channel.peek(4));
+
+        channel.next();
+        assertEquals("a4", channel.peek(3).getValue().toString());
+    }
+
+    @Test
+    void markKeepsConsumedTokensWhileTheRingGrows() throws IOException {
+        TokenChannel channel = channel(identifiers(40), 4);
+        channel.next();
+        long mark = channel.mark();
+        for (int i = 1; i < 30; i++) {
+            assertEquals("a" + i, channel.next().getValue().toString());
+        }
+        assertEquals("a35", channel.peek(5).getValue().toString());
+
+        channel.rewind(mark);
+        assertEquals(1, channel.getPosition());
+        for (int i = 1; i < 40; i++) {
+            assertEquals("a" + i, channel.next().getValue().toString());
+        }
+        channel.release(mark);
+        assertEquals(TokenType.NEWLINE, channel.next().getType());
+        assertNull(channel.next());
+    }
+
+    @Test
+    void nestedMarksMayBeReleasedOutOfOrder() throws IOException {
+        TokenChannel channel = channel(identifiers(40), 4);
+        long outer = channel.mark();
+        channel.next();
+        channel.next();
+        long inner = channel.mark();
+        channel.next();
+
+        channel.release(outer);
+        assertThrows(IllegalStateException.class, () -> channel.rewind(outer));
+        channel.rewind(inner);
+        assertEquals("a2", channel.next().getValue().toString());
+
+        channel.release(inner);
+        assertThrows(IllegalStateException.class, () -> channel.rewind(inner));
+        for (int i = 3; i < 7; i++) {
+            assertEquals("a" + i, channel.peek(i - 3).getValue().toString());
+        }
+        assertThrows(IllegalStateException.class, () -> channel.peek(4));
+    }
+
+    @Test
+    void releasingUnknownOrReleasedMarkThrows() throws IOException {
+        TokenChannel channel = channel(identifiers(10), 4);
+        assertThrows(IllegalStateException.class, () -> channel.release(0));
+
+        long mark = channel.mark();
+        channel.next();
+        assertThrows(IllegalStateException.class, () -> channel.release(mark + 1));
+        channel.release(mark);
+        assertThrows(IllegalStateException.class, () -> channel.release(mark));
+    }
+
+    @Test
+    void positionMarkedTwiceNeedsTwoReleases() throws IOException {
+        TokenChannel channel = channel(identifiers(10), 4);
+        long first = channel.mark();
+        long second = channel.mark();
+        assertEquals(first, second);
+        channel.next();
+
+        channel.release(first);
+        channel.rewind(second);
+        assertEquals("a0", channel.next().getValue().toString());
+        channel.release(second);
+        assertThrows(IllegalStateException.class, () -> channel.rewind(first));
+    }
+
+    private static String identifiers(int count) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            source.append('a').append(i).append(' ');
+        }
+        return source.append('\n').toString();
+    }
+
+    private static TokenChannel channel(String source, int capacity) {
+        return new TokenChannel(new Lexer(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8))), capacity);
+    }
+}
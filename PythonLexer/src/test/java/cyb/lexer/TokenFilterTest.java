@@ -0,0 +1,91 @@
+package cyb.lexer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Covers switching the token filter between tokens and stopping at the first error.
+ */
+class TokenFilterTest {
+    private final TokenCursor cursor = new TokenCursor();
+
+    @Test
+    void droppedTypesAreNotDeliveredFromTokensLexedAhead() throws IOException {
+        Lexer lexer = lexer("x\ny\n");
+        lexer.setTokenFilter(EnumSet.of(TokenType.IDENTIFIER, TokenType.NEWLINE));
+        assertEquals("IDENTIFIER x", next(lexer));
+
+        // The NEWLINE after x ended in the same step as x and is already queued.
+        lexer.setTokenFilter(EnumSet.of(TokenType.IDENTIFIER));
+        assertEquals(List.of("IDENTIFIER y"), rest(lexer));
+    }
+
+    @Test
+    void addedTypesAreDeliveredFromTokensLexedAfterTheSwitch() throws IOException {
+        Lexer lexer = lexer("x\ny + z\n");
+        lexer.setTokenFilter(EnumSet.of(TokenType.IDENTIFIER));
+        assertEquals("IDENTIFIER x", next(lexer));
+
+        lexer.setTokenFilter(EnumSet.allOf(TokenType.class));
+        assertEquals(List.of("IDENTIFIER y", "PLUS +", "IDENTIFIER z", "NEWLINE "), rest(lexer));
+    }
+
+    @Test
+    void switchingKeepsTheOrderOfQueuedTokens() throws IOException {
+        Lexer lexer = lexer("if x:\n    if y:\n        z\nw\n");
+        lexer.setTokenFilter(EnumSet.of(TokenType.IDENTIFIER, TokenType.DEDENT, TokenType.NEWLINE));
+        assertEquals(List.of("IDENTIFIER x", "NEWLINE ", "IDENTIFIER y", "NEWLINE ", "IDENTIFIER z"),
+                List.of(next(lexer), next(lexer), next(lexer), next(lexer), next(lexer)));
+
+        lexer.setTokenFilter(EnumSet.of(TokenType.IDENTIFIER, TokenType.DEDENT));
+        assertEquals(List.of("DEDENT ", "DEDENT ", "IDENTIFIER w"), rest(lexer));
+    }
+
+    @Test
+    void failFastStopsAtTheFirstError() throws IOException {
+        Lexer lexer = lexer("x = $ y\n1__0\n");
+        lexer.setFailFast(true);
+        assertEquals(List.of("IDENTIFIER x", "ASSIGN =", "ERROR Invalid symbol."), rest(lexer));
+
+        lexer.reset(stream("y\n1__0\nz\n"));
+        assertEquals(List.of("IDENTIFIER y", "NEWLINE ", "ERROR Underscore in numeric literal must be followed by a digit."),
+                rest(lexer));
+    }
+
+    @Test
+    void withoutFailFastLexingContinuesAfterErrors() throws IOException {
+        List<String> tokens = rest(lexer("x = $ y\n1__0\nz\n"));
+        assertEquals(9, tokens.size());
+        assertTrue(tokens.contains("IDENTIFIER z"));
+    }
+
+    private String next(Lexer lexer) throws IOException {
+        assertTrue(lexer.next(cursor));
+        return cursor.getType() + " " + cursor.getValue();
+    }
+
+    private List<String> rest(Lexer lexer) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        while (lexer.next(cursor)) {
+            tokens.add(cursor.getType() + " " + cursor.getValue());
+        }
+        return tokens;
+    }
+
+    private static Lexer lexer(String source) {
+        return new Lexer(stream(source));
+    }
+
+    private static ByteArrayInputStream stream(String source) {
+        return new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8));
+    }
+}
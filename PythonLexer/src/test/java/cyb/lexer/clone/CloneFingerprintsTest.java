@@ -0,0 +1,33 @@
+package cyb.lexer.clone;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CloneFingerprintsTest {
+    @Test
+    void resultsFollowTheOrderOfTheFiles(@TempDir Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            Path file = directory.resolve("module" + i + ".py");
+            // Sizes vary so that workers finish out of order.
+            Files.writeString(file, "x = f(y)\n".repeat(1 + (i * 37) % 200));
+            files.add(file);
+            names.add(file.toString());
+        }
+
+        for (int threads : new int[]{1, 4}) {
+            List<String> visited = new ArrayList<>();
+            CloneFingerprints.fingerprint(files, 5, 4, threads, fingerprints -> visited.add(fingerprints.getName()));
+            assertEquals(names, visited);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package cyb.lexer.lsp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SemanticTokensEncoderTest {
+    private final SemanticTokensEncoder encoder = new SemanticTokensEncoder();
+
+    @Test
+    void columnsAndLengthsAreUtf16Units() throws IOException {
+        assertEquals(List.of("0:0 1 variable", "0:2 1 operator", "0:4 6 string", "0:11 1 operator", "0:13 1 variable",
+                        "1:0 6 keyword", "1:7 1 variable", "1:9 2 operator",
+                        "1:12 1 number"),
+                decode(encoder.encode("s = '\u00e9\u20ac\ud83d\ude00' + t  # \u00fc\u00df \ud83d\udc0d\nassert x == 1\n")));
+    }
+
+    @Test
+    void linesAfterNonAsciiLinesStartOver() throws IOException {
+        assertEquals(List.of("0:0 1 variable", "0:2 1 operator", "0:4 4 string", "1:4 1 variable"),
+                decode(encoder.encode("a = '\u4e2d\u6587'\n    b\n")));
+    }
+
+    @Test
+    void columnsRestartAfterLineContinuation() throws IOException {
+        assertEquals(List.of("0:0 1 variable", "0:2 1 operator", "0:4 1 operator", "1:4 1 number"),
+                decode(encoder.encode("x = - \\\n    2\n")));
+    }
+
+    @Test
+    void encoderIsReusable() throws IOException {
+        encoder.encode("'\u20ac\u20ac\u20ac' + x\n");
+        assertEquals(List.of("0:0 1 variable"), decode(encoder.encode("y\n")));
+    }
+
+    private static List<String> decode(int[] data) {
+        List<String> tokens = new ArrayList<>();
+        int line = 0;
+        int column = 0;
+        for (int i = 0; i < data.length; i += 5) {
+            column = data[i] == 0 ? column + data[i + 1] : data[i + 1];
+            line += data[i];
+            tokens.add(line + ":" + column + " " + data[i + 2] + " "
+                    + SemanticTokensEncoder.TOKEN_TYPES.get(data[i + 3]));
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,84 @@
+package cyb.lexer.outline;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class OutlineExtractorTest {
+    private static final String FIXTURE = "/outline/fixture.py";
+
+    private final OutlineExtractor extractor = new OutlineExtractor();
+
+    @Test
+    void extractsDecoratorsNestedClassesAndModuleLevelImports() throws IOException {
+        OutlineNode outline;
+        try (InputStream in = OutlineExtractorTest.class.getResourceAsStream(FIXTURE)) {
+            assertNotNull(in, FIXTURE + " is missing from the classpath.");
+            outline = extractor.extract("fixture", in);
+        }
+
+        StringBuilder printed = new StringBuilder();
+        outline.print(printed, 0);
+        assertEquals(String.join("\n",
+                "fixture",
+                "  import os  [2]",
+                "  import os.path as osp, sys  [3]",
+                "  from collections import OrderedDict as OD, defaultdict  [4]",
+                "  from . import sibling  [5]",
+                "  from ..pkg.mod import *  [6]",
+                "  @decorator",
+                "  @module.attribute.decorator",
+                "  def top  [13]",
+                "    def inner  [17]",
+                "  class Outer  [23]",
+                "    import abc  [25]",
+                "    @property",
+                "    def value  [28]",
+                "    class Inner  [31]",
+                "      @staticmethod",
+                "      def fetch  [33]",
+                "      class Innermost  [40]",
+                "    @classmethod",
+                "    def create  [44]",
+                "  def main  [47]",
+                "  def conditional  [53]",
+                "  import argparse  [54]",
+                ""), printed.toString());
+        assertEquals(18, outline.size());
+    }
+
+    @Test
+    void importsInsideFunctionsAreSkippedAtEveryDepth() throws IOException {
+        OutlineNode outline = extract("def f():\n    import a\n    class C:\n        import b\n"
+                + "        def g():\n            import c\nimport d\n");
+
+        OutlineNode function = outline.getChildren().get(0);
+        OutlineNode nested = function.getChildren().get(0);
+        assertEquals(List.of("C"), names(function));
+        assertEquals(List.of("import b", "g"), names(nested));
+        assertEquals(List.of(), names(nested.getChildren().get(1)));
+        assertEquals(List.of("f", "import d"), names(outline));
+    }
+
+    @Test
+    void extractorIsReusable() throws IOException {
+        extract("class A:\n    def f(self):\n        pass\n");
+        assertEquals(List.of("B"), names(extract("class B: pass\n")));
+    }
+
+    private OutlineNode extract(String source) throws IOException {
+        return extractor.extract("test", new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static List<String> names(OutlineNode node) {
+        return node.getChildren().stream().map(OutlineNode::getName).collect(Collectors.toList());
+    }
+}
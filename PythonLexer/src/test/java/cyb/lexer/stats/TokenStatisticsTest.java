@@ -0,0 +1,43 @@
+package cyb.lexer.stats;
+
+import cyb.lexer.TokenType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TokenStatisticsTest {
+    @Test
+    void countsLinesOfTheInputRatherThanOfTheTokens() throws IOException {
+        assertEquals(4, lines("x = 1\n\n# trailing comment\n\n"));
+        assertEquals(3, lines("x = 1\r\ny = 2\rz = 3"));
+        assertEquals(1, lines("x"));
+        assertEquals(0, lines(""));
+    }
+
+    @Test
+    void reusesTheLexerFromFileToFile() throws IOException {
+        TokenStatistics statistics = new TokenStatistics();
+        statistics.addFile(stream("def f(\n"));
+        statistics.addFile(stream("x = 1\n"));
+
+        assertEquals(2, statistics.getFiles());
+        assertEquals(2, statistics.getLines());
+        assertEquals(1, statistics.getCount(TokenType.DEF));
+        assertEquals(1, statistics.getCount(TokenType.ASSIGN));
+        assertEquals(1, statistics.getIdentifiers().get("x"));
+    }
+
+    private static long lines(String source) throws IOException {
+        TokenStatistics statistics = new TokenStatistics();
+        statistics.addFile(stream(source));
+        return statistics.getLines();
+    }
+
+    private static ByteArrayInputStream stream(String source) {
+        return new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8));
+    }
+}
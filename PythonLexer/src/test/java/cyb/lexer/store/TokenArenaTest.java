@@ -0,0 +1,49 @@
+package cyb.lexer.store;
+
+import cyb.lexer.TokenType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TokenArenaTest {
+    @Test
+    void storesRepeatedValuesOncePerFile() throws IOException {
+        TokenArena arena = new TokenArena();
+        int file = arena.appender().append("a.py", stream("spam = spam + spam\n"));
+
+        assertEquals(TokenType.IDENTIFIER, arena.getType(file, 0));
+        assertEquals("spam", arena.getValue(file, 0));
+        assertEquals("=", arena.getValue(file, 1));
+        assertEquals("spam", arena.getValue(file, 2));
+        assertEquals("spam", arena.getValue(file, 4));
+        assertEquals(1 + 4, arena.getStringBytes());
+    }
+
+    @Test
+    void keepsDistinctValuesApartAcrossRehashes() throws IOException {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            source.append("name").append(i).append(" = name").append(i / 2).append('\n');
+        }
+        source.append("name0 = '\\u00e9t\\u00e9 \\u20ac \\U0001F600'\n");
+        TokenArena arena = new TokenArena();
+        TokenArena.Appender appender = arena.appender();
+        appender.append("warmup.py", stream("x = 1\n"));
+        int file = appender.append("many.py", stream(source.toString()));
+
+        for (int i = 0; i < 3000; i++) {
+            assertEquals("name" + i, arena.getValue(file, i * 4));
+            assertEquals("name" + i / 2, arena.getValue(file, i * 4 + 2));
+        }
+        assertEquals("name0", arena.getValue(file, 3000 * 4));
+        assertEquals("\u00e9t\u00e9 \u20ac \ud83d\ude00", arena.getValue(file, 3000 * 4 + 2));
+    }
+
+    private static ByteArrayInputStream stream(String source) {
+        return new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,54 @@
+"""Module docstring with def and class in it."""
+import os
+import os.path as osp, sys
+from collections import OrderedDict as OD, defaultdict
+from . import sibling
+from ..pkg.mod import *
+
+CONSTANT = {"def": 1, "class": 2}
+
+
+@decorator
+@module.attribute.decorator(arg, key=[1, 2])
+def top(a, b=(1, 2)):
+    import json
+    from typing import List
+
+    def inner():
+        import re
+        return re.compile("class Fake:")
+    return inner
+
+
+class Outer(Base, metaclass=Meta):
+    """class Hidden: pass"""
+    import abc
+
+    @property
+    def value(self):
+        return self._value
+
+    class Inner:
+        @staticmethod
+        async def fetch(
+                url,
+                timeout=10,
+        ):
+            from urllib import request
+            return request
+
+        class Innermost:
+            pass
+
+    @classmethod
+    def create(cls): return cls()
+
+
+async def main():
+    x = [
+def_ for def_ in range(3)
+    ]
+
+if __name__ == "__main__":
+    def conditional(): pass
+    import argparse